@@ -0,0 +1,269 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017.  Bruno Retolaza
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kuruchy.android.and_mymovies;
+
+import android.app.Instrumentation;
+import android.content.Context;
+import android.database.MatrixCursor;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.drawable.Drawable;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.load.data.DataFetcher;
+import com.bumptech.glide.load.model.GenericLoaderFactory;
+import com.bumptech.glide.load.model.GlideUrl;
+import com.bumptech.glide.load.model.ModelLoader;
+import com.bumptech.glide.load.model.ModelLoaderFactory;
+import com.bumptech.glide.load.model.stream.HttpUrlGlideUrlLoader;
+import com.bumptech.glide.load.model.stream.StreamModelLoader;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+
+/**
+ * Counts the posters still showing their placeholder while the grid scrolls quickly, with and
+ * without the PosterPreloader. Posters come from a stand-in of the image server answering after
+ * a fixed latency, so both runs see the same network. Results are logged under the
+ * PosterPreloaderBenchmark tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PosterPreloaderBenchmark {
+    private static final String TAG = PosterPreloaderBenchmark.class.getSimpleName();
+
+    // Movies in the grid, more than the scroll goes through
+    private static final int MOVIES = 1000;
+
+    // A quick scroll down the grid, about 2500 pixels a second
+    private static final int SCROLL_PX_PER_FRAME = 40;
+    private static final int FRAMES = 300;
+    private static final long FRAME_MILLIS = 16;
+
+    // Time the stand-in image server takes to send a poster
+    private static final long POSTER_LATENCY_MILLIS = 150;
+
+    // Time given to the first screen of posters to load before scrolling
+    private static final long FIRST_SCREEN_TIMEOUT_MILLIS = 5000;
+
+    @Rule
+    public final ActivityTestRule<MainActivity> mActivityRule = new ActivityTestRule<>(MainActivity.class);
+
+    private Instrumentation mInstrumentation;
+    private MainActivity mActivity;
+    private Drawable.ConstantState mPlaceholder;
+
+    @Before
+    public void setUp() {
+        mInstrumentation = InstrumentationRegistry.getInstrumentation();
+        mActivity = mActivityRule.getActivity();
+        mPlaceholder = mActivity.getResources().getDrawable(R.drawable.placeholder, null).getConstantState();
+
+        // Posters of earlier runs must be loaded again
+        Glide.get(mActivity).clearDiskCache();
+        Glide.get(mActivity).register(GlideUrl.class, InputStream.class, new StandInPosterLoader.Factory(createPoster()));
+    }
+
+    @After
+    public void tearDown() {
+        Glide.get(mActivity).register(GlideUrl.class, InputStream.class, new HttpUrlGlideUrlLoader.Factory());
+    }
+
+    @Test
+    public void placeholdersWhileScrolling_withAndWithoutPreloader() throws Exception {
+        int[] withoutPreloader = scroll("without", false);
+        int[] withPreloader = scroll("with", true);
+
+        log("without preloader", withoutPreloader);
+        log("with preloader", withPreloader);
+    }
+
+    // Scrolls a new grid down, returning the number of placeholders shown in each frame
+    private int[] scroll(final String name, final boolean preload) throws Exception {
+        final RecyclerView[] recyclerView = new RecyclerView[1];
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                Glide.get(mActivity).clearMemory();
+
+                GridLayoutManager layoutManager =
+                        new GridLayoutManager(mActivity, MainActivity.calculateNoOfColumns(mActivity));
+                MovieAdapter adapter = new MovieAdapter(mActivity, new MovieAdapter.MovieAdapterOnClickHandler() {
+                    @Override
+                    public void onClick(int movieIdClicked) {
+                    }
+                });
+
+                // Posters of each run have their own paths, so none is cached from the other run
+                MatrixCursor cursor = new MatrixCursor(MainActivity.GRID_MOVIE_PROJECTION, MOVIES);
+                for (int i = 0; i < MOVIES; i++) {
+                    cursor.addRow(new Object[]{"/" + name + i + ".jpg", i + 1, i, null, null});
+                }
+                adapter.swapCursor(cursor);
+                cursor.close();
+
+                recyclerView[0] = new RecyclerView(mActivity);
+                recyclerView[0].setLayoutManager(layoutManager);
+                recyclerView[0].setHasFixedSize(true);
+                recyclerView[0].setAdapter(adapter);
+                if (preload) {
+                    recyclerView[0].addOnScrollListener(new PosterPreloader(mActivity, layoutManager));
+                }
+                mActivity.setContentView(recyclerView[0]);
+            }
+        });
+
+        // Start from a loaded first screen
+        long deadline = System.currentTimeMillis() + FIRST_SCREEN_TIMEOUT_MILLIS;
+        while (countPlaceholders(recyclerView[0]) > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(FRAME_MILLIS);
+        }
+
+        int[] placeholders = new int[FRAMES];
+        for (int frame = 0; frame < FRAMES; frame++) {
+            mInstrumentation.runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    recyclerView[0].scrollBy(0, SCROLL_PX_PER_FRAME);
+                }
+            });
+            // Counted once the frame was drawn, right before the next scroll
+            Thread.sleep(FRAME_MILLIS);
+            placeholders[frame] = countPlaceholders(recyclerView[0]);
+        }
+        return placeholders;
+    }
+
+    // Counts the cells on screen still showing the placeholder
+    private int countPlaceholders(final RecyclerView recyclerView) {
+        final int[] count = new int[1];
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < recyclerView.getChildCount(); i++) {
+                    MovieAdapter.MovieAdapterViewHolder holder = (MovieAdapter.MovieAdapterViewHolder)
+                            recyclerView.getChildViewHolder(recyclerView.getChildAt(i));
+                    Drawable drawable = holder.mMovieImageView.getDrawable();
+                    if (drawable != null && drawable.getConstantState() == mPlaceholder) {
+                        count[0]++;
+                    }
+                }
+            }
+        });
+        return count[0];
+    }
+
+    private static void log(String name, int[] placeholders) {
+        int total = 0;
+        int framesWithPlaceholders = 0;
+        int max = 0;
+        for (int count : placeholders) {
+            total += count;
+            framesWithPlaceholders += count > 0 ? 1 : 0;
+            max = Math.max(max, count);
+        }
+        Log.i(TAG, String.format("%s: %d placeholders over %d frames, %d frames with placeholders, at most %d",
+                name, total, placeholders.length, framesWithPlaceholders, max));
+    }
+
+    // A poster in the largest size the grid loads
+    private static byte[] createPoster() {
+        Bitmap bitmap = Bitmap.createBitmap(342, 513, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(Color.DKGRAY);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bitmap.compress(Bitmap.CompressFormat.JPEG, 80, out);
+        bitmap.recycle();
+        return out.toByteArray();
+    }
+
+    /**
+     * Stand-in of the image server, sending the same poster for every URL after the latency of
+     * the network.
+     */
+    private static final class StandInPosterLoader implements StreamModelLoader<GlideUrl> {
+        private final byte[] mPoster;
+
+        StandInPosterLoader(byte[] poster) {
+            mPoster = poster;
+        }
+
+        @Override
+        public DataFetcher<InputStream> getResourceFetcher(final GlideUrl url, int width, int height) {
+            return new DataFetcher<InputStream>() {
+                private volatile boolean mCancelled;
+
+                @Override
+                public InputStream loadData(Priority priority) throws Exception {
+                    Thread.sleep(POSTER_LATENCY_MILLIS);
+                    return mCancelled ? null : new ByteArrayInputStream(mPoster);
+                }
+
+                @Override
+                public void cleanup() {
+                }
+
+                @Override
+                public String getId() {
+                    return url.getCacheKey();
+                }
+
+                @Override
+                public void cancel() {
+                    mCancelled = true;
+                }
+            };
+        }
+
+        static final class Factory implements ModelLoaderFactory<GlideUrl, InputStream> {
+            private final byte[] mPoster;
+
+            Factory(byte[] poster) {
+                mPoster = poster;
+            }
+
+            @Override
+            public ModelLoader<GlideUrl, InputStream> build(Context context, GenericLoaderFactory factories) {
+                return new StandInPosterLoader(mPoster);
+            }
+
+            @Override
+            public void teardown() {
+            }
+        }
+    }
+}
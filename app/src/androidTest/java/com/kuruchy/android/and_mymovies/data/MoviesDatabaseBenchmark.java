@@ -0,0 +1,191 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017.  Bruno Retolaza
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kuruchy.android.and_mymovies.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.RenamingDelegatingContext;
+import android.util.Log;
+
+import com.kuruchy.android.and_mymovies.data.MoviesContract.CategoryEntry;
+import com.kuruchy.android.and_mymovies.data.MoviesContract.MovieEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Measures how long the grid query of a list takes while a sync writes pages of movies, with
+ * write-ahead logging and with the rollback journal used before it. Results are logged under the
+ * MoviesDatabaseBenchmark tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MoviesDatabaseBenchmark {
+    private static final String TAG = MoviesDatabaseBenchmark.class.getSimpleName();
+
+    // Movies stored in the list before measuring, as after scrolling through 50 pages
+    private static final int STORED_MOVIES = 1000;
+    private static final int MOVIES_PER_PAGE = 20;
+    // Rows the grid loader reads at first
+    private static final int GRID_LIMIT = 60;
+    private static final int QUERIES = 200;
+
+    private Context mContext;
+    private MoviesDBHelper mDbHelper;
+
+    @Before
+    public void setUp() {
+        // A database of its own, so the movies of the app are left alone
+        mContext = new RenamingDelegatingContext(InstrumentationRegistry.getTargetContext(), "benchmark_");
+        mContext.deleteDatabase("movies.db");
+    }
+
+    @After
+    public void tearDown() {
+        if (mDbHelper != null) {
+            mDbHelper.close();
+        }
+        mContext.deleteDatabase("movies.db");
+    }
+
+    @Test
+    public void gridQueryLatency_whileSyncing() throws Exception {
+        long[] idle = measure(true, false);
+        long[] wal = measure(true, true);
+        long[] rollbackJournal = measure(false, true);
+
+        log("idle", idle);
+        log("syncing, WAL", wal);
+        log("syncing, rollback journal", rollbackJournal);
+    }
+
+    // Times the grid query, with a sync writing pages at the same time or not
+    private long[] measure(boolean writeAheadLogging, boolean syncing) throws Exception {
+        if (mDbHelper != null) {
+            mDbHelper.close();
+        }
+        mContext.deleteDatabase("movies.db");
+        mDbHelper = new MoviesDBHelper(mContext);
+        mDbHelper.setWriteAheadLoggingEnabled(writeAheadLogging);
+
+        final SQLiteDatabase writableDatabase = mDbHelper.getWritableDatabase();
+        for (int page = 0; page < STORED_MOVIES / MOVIES_PER_PAGE; page++) {
+            writePage(writableDatabase, page);
+        }
+
+        final AtomicBoolean done = new AtomicBoolean();
+        Thread sync = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                // Rewrites the stored pages over and over, one transaction per page like the sync
+                for (int page = 0; !done.get(); page = (page + 1) % (STORED_MOVIES / MOVIES_PER_PAGE)) {
+                    writePage(writableDatabase, page);
+                }
+            }
+        });
+        if (syncing) {
+            sync.start();
+        }
+
+        long[] latencies = new long[QUERIES];
+        try {
+            SQLiteDatabase readableDatabase = mDbHelper.getReadableDatabase();
+            for (int i = 0; i < QUERIES; i++) {
+                long start = System.nanoTime();
+                Cursor cursor = readableDatabase.rawQuery("SELECT " + MovieEntry.COLUMN_POSTER_PATH + ", " +
+                        MovieEntry.COLUMN_MOVIE_ID + " FROM " + MovieEntry.TABLE_NAME +
+                        " INNER JOIN " + CategoryEntry.TABLE_NAME + " USING (" + MovieEntry.COLUMN_MOVIE_ID + ")" +
+                        " WHERE " + CategoryEntry.COLUMN_CATEGORY + " = ?" +
+                        " ORDER BY " + CategoryEntry.COLUMN_RANK + ", " + MovieEntry.COLUMN_MOVIE_ID +
+                        " LIMIT " + GRID_LIMIT, new String[]{CategoryEntry.POPULAR});
+                try {
+                    int rows = 0;
+                    while (cursor.moveToNext()) {
+                        rows++;
+                    }
+                    assertEquals(GRID_LIMIT, rows);
+                } finally {
+                    cursor.close();
+                }
+                latencies[i] = System.nanoTime() - start;
+            }
+        } finally {
+            done.set(true);
+            if (syncing) {
+                sync.join();
+            }
+        }
+        return latencies;
+    }
+
+    // Writes a page of movies and lists them in the popular list, in one transaction
+    private static void writePage(SQLiteDatabase db, int page) {
+        db.beginTransactionNonExclusive();
+        try {
+            for (int i = 0; i < MOVIES_PER_PAGE; i++) {
+                int rank = page * MOVIES_PER_PAGE + i;
+                ContentValues movie = new ContentValues();
+                movie.put(MovieEntry.COLUMN_MOVIE_ID, rank + 1);
+                movie.put(MovieEntry.COLUMN_MOVIE_TITLE, "Movie " + rank);
+                movie.put(MovieEntry.COLUMN_MOVIE_ORG_TITLE, "Movie " + rank);
+                movie.put(MovieEntry.COLUMN_POSTER_PATH, "/poster" + rank + ".jpg");
+                movie.put(MovieEntry.COLUMN_BACKDROP_PATH, "/backdrop" + rank + ".jpg");
+                movie.put(MovieEntry.COLUMN_SYNOPSIS, "A synopsis long enough to look like the ones of the server, " +
+                        "so the pages written are about as big as the real ones.");
+                movie.put(MovieEntry.COLUMN_GLOBAL_RATING, 7.5);
+                movie.put(MovieEntry.COLUMN_RELEASE_DATE, 17000 + rank);
+                db.insertWithOnConflict(MovieEntry.TABLE_NAME, null, movie, SQLiteDatabase.CONFLICT_REPLACE);
+
+                ContentValues membership = new ContentValues();
+                membership.put(CategoryEntry.COLUMN_CATEGORY, CategoryEntry.POPULAR);
+                membership.put(CategoryEntry.COLUMN_MOVIE_ID, rank + 1);
+                membership.put(CategoryEntry.COLUMN_RANK, rank);
+                db.insertWithOnConflict(CategoryEntry.TABLE_NAME, null, membership, SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static void log(String name, long[] latencies) {
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        Log.i(TAG, String.format("%s: median %.2f ms, p95 %.2f ms, max %.2f ms", name,
+                sorted[sorted.length / 2] / 1e6,
+                sorted[sorted.length * 95 / 100] / 1e6,
+                sorted[sorted.length - 1] / 1e6));
+    }
+}
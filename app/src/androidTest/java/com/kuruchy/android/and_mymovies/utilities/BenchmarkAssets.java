@@ -21,25 +21,38 @@
  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
  * SOFTWARE.
  */
-package com.kuruchy.android.and_mymovies.sync;
 
-import android.app.IntentService;
-import android.content.Intent;
+package com.kuruchy.android.and_mymovies.utilities;
 
-import com.kuruchy.android.and_mymovies.utilities.TheMovieDatabaseNetworkUtils;
+import android.support.test.InstrumentationRegistry;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 
 /**
- * An {@link IntentService} subclass for handling asynchronous task requests in
- * a service on a separate handler thread.
+ * Responses of the movies server the benchmarks work on, stored in the assets of the tests.
  */
-public class MoviesSyncIntentService extends IntentService {
+final class BenchmarkAssets {
+
+    // A page of the top rated list, in the format the server sends it
+    static final String TOP_RATED_PAGE = "top_rated_page.json";
 
-    public MoviesSyncIntentService() {
-        super("MoviesSyncIntentService");
+    private BenchmarkAssets() {
     }
 
-    @Override
-    protected void onHandleIntent(Intent intent) {
-        MoviesSyncTask.syncMovieData(this, TheMovieDatabaseNetworkUtils.SORTING_PARAM);
+    static byte[] read(String name) throws IOException {
+        InputStream in = InstrumentationRegistry.getContext().getAssets().open(name);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
     }
-}
\ No newline at end of file
+}
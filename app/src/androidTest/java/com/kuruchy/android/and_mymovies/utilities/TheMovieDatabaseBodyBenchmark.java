@@ -0,0 +1,188 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017.  Bruno Retolaza
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kuruchy.android.and_mymovies.utilities;
+
+import android.content.ContentValues;
+import android.os.Debug;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Scanner;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares reading the body of a page of movies with a Scanner into a String, as the app did
+ * before, with reading it into pooled buffers, plain and gzipped. Then compares parsing the body
+ * read whole, as the app does, with parsing it straight from the inflating stream. Results are
+ * logged under the TheMovieDatabaseBodyBenchmark tag, with the bytes each way sends over the
+ * network.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TheMovieDatabaseBodyBenchmark {
+    private static final String TAG = TheMovieDatabaseBodyBenchmark.class.getSimpleName();
+
+    // Runs left out of the results, while the code gets compiled
+    private static final int WARM_UP_RUNS = 50;
+    private static final int RUNS = 500;
+
+    private static final int MOVIES_PER_PAGE = 20;
+
+    private interface BodyReader {
+        // Reads the whole body and returns its length in chars or bytes, or the movies parsed
+        int read(InputStream in) throws IOException;
+    }
+
+    // Drops the parsed movies, only the reading and parsing are measured
+    private static final TheMovieDatabaseJsonUtils.MovieRowSink DISCARDING_SINK =
+            new TheMovieDatabaseJsonUtils.MovieRowSink() {
+                @Override
+                public ContentValues newRow() {
+                    return new ContentValues();
+                }
+
+                @Override
+                public void onRowParsed(ContentValues row) {
+                }
+            };
+
+    private byte[] mPage;
+    private byte[] mGzippedPage;
+
+    @Before
+    public void setUp() throws IOException {
+        mPage = BenchmarkAssets.read(BenchmarkAssets.TOP_RATED_PAGE);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GZIPOutputStream gzipOut = new GZIPOutputStream(out);
+        gzipOut.write(mPage);
+        gzipOut.close();
+        mGzippedPage = out.toByteArray();
+    }
+
+    @Test
+    public void readBody_scannerVersusPooled() throws Exception {
+        BodyReader scanner = new BodyReader() {
+            @Override
+            public int read(InputStream in) throws IOException {
+                Scanner scanner = new Scanner(in);
+                scanner.useDelimiter("\\A");
+                return scanner.next().length();
+            }
+        };
+        BodyReader pooled = new BodyReader() {
+            @Override
+            public int read(InputStream in) throws IOException {
+                return TheMovieDatabaseNetworkUtils.readBody(in, false, mPage.length).length;
+            }
+        };
+        BodyReader pooledGzip = new BodyReader() {
+            @Override
+            public int read(InputStream in) throws IOException {
+                return TheMovieDatabaseNetworkUtils.readBody(in, true, mGzippedPage.length).length;
+            }
+        };
+
+        assertEquals(mPage.length, pooled.read(new ByteArrayInputStream(mPage)));
+        assertEquals(mPage.length, pooledGzip.read(new ByteArrayInputStream(mGzippedPage)));
+
+        measure("Scanner", scanner, mPage);
+        measure("pooled", pooled, mPage);
+        measure("pooled, gzip", pooledGzip, mGzippedPage);
+    }
+
+    @Test
+    public void parseBody_bufferedVersusStreaming() throws Exception {
+        // The body is read whole first, so it can be shared, cached and retried
+        BodyReader buffered = new BodyReader() {
+            @Override
+            public int read(InputStream in) throws IOException {
+                byte[] body = TheMovieDatabaseNetworkUtils.readBody(in, true, mGzippedPage.length);
+                return TheMovieDatabaseJsonUtils.parseMovieRows(new ByteArrayInputStream(body), DISCARDING_SINK);
+            }
+        };
+        // The movies are parsed as the body is inflated, without holding it
+        BodyReader streaming = new BodyReader() {
+            @Override
+            public int read(InputStream in) throws IOException {
+                InputStream body = new GZIPInputStream(in);
+                try {
+                    return TheMovieDatabaseJsonUtils.parseMovieRows(body, DISCARDING_SINK);
+                } finally {
+                    body.close();
+                }
+            }
+        };
+
+        assertEquals(MOVIES_PER_PAGE, buffered.read(new ByteArrayInputStream(mGzippedPage)));
+        assertEquals(MOVIES_PER_PAGE, streaming.read(new ByteArrayInputStream(mGzippedPage)));
+
+        measure("read whole, then parsed", buffered, mGzippedPage);
+        measure("parsed while inflated", streaming, mGzippedPage);
+    }
+
+    // Logs the read time and the bytes allocated per body
+    @SuppressWarnings("deprecation")
+    private void measure(String name, BodyReader reader, byte[] body) throws Exception {
+        for (int i = 0; i < WARM_UP_RUNS; i++) {
+            reader.read(new ByteArrayInputStream(body));
+        }
+
+        long[] durations = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            InputStream in = new ByteArrayInputStream(body);
+            long start = System.nanoTime();
+            reader.read(in);
+            durations[i] = System.nanoTime() - start;
+        }
+
+        // Counted apart, counting slows the allocations down
+        Debug.startAllocCounting();
+        Debug.resetThreadAllocSize();
+        for (int i = 0; i < RUNS; i++) {
+            reader.read(new ByteArrayInputStream(body));
+        }
+        long allocatedBytes = Debug.getThreadAllocSize();
+        Debug.stopAllocCounting();
+
+        Arrays.sort(durations);
+        Log.i(TAG, String.format("%s: %d bytes sent, median %.3f ms, p95 %.3f ms, %d KB allocated per body",
+                name, body.length,
+                durations[RUNS / 2] / 1e6,
+                durations[RUNS * 95 / 100] / 1e6,
+                allocatedBytes / RUNS / 1024));
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017.  Bruno Retolaza
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kuruchy.android.and_mymovies.utilities;
+
+import android.content.ContentValues;
+import android.os.Debug;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares parsing a page of movies by building the whole JSON tree, as the sync did before,
+ * with the token by token parse it does now. Results are logged under the
+ * TheMovieDatabaseJsonBenchmark tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TheMovieDatabaseJsonBenchmark {
+    private static final String TAG = TheMovieDatabaseJsonBenchmark.class.getSimpleName();
+
+    private static final int MOVIES_PER_PAGE = 20;
+
+    // Runs left out of the results, while the code gets compiled
+    private static final int WARM_UP_RUNS = 50;
+    private static final int RUNS = 500;
+
+    private interface PageParser {
+        // Parses the page and returns the number of movies in it
+        int parse(byte[] page) throws Exception;
+    }
+
+    private byte[] mPage;
+
+    @Before
+    public void setUp() throws IOException {
+        mPage = BenchmarkAssets.read(BenchmarkAssets.TOP_RATED_PAGE);
+    }
+
+    @Test
+    public void parseMovieList_treeVersusStreaming() throws Exception {
+        PageParser tree = new PageParser() {
+            @Override
+            public int parse(byte[] page) throws Exception {
+                return TheMovieDatabaseJsonUtils.getMovieArrayFromJSONData(new String(page, "UTF-8")).length;
+            }
+        };
+        PageParser streaming = new PageParser() {
+            @Override
+            public int parse(byte[] page) throws Exception {
+                return TheMovieDatabaseJsonUtils.parseMovieRows(new ByteArrayInputStream(page),
+                        new TheMovieDatabaseJsonUtils.MovieRowSink() {
+                            @Override
+                            public ContentValues newRow() {
+                                return new ContentValues();
+                            }
+
+                            @Override
+                            public void onRowParsed(ContentValues row) {
+                            }
+                        });
+            }
+        };
+
+        measure("JSON tree", tree);
+        measure("streaming", streaming);
+    }
+
+    // Logs the parse time and the bytes allocated per page
+    @SuppressWarnings("deprecation")
+    private void measure(String name, PageParser parser) throws Exception {
+        for (int i = 0; i < WARM_UP_RUNS; i++) {
+            assertEquals(MOVIES_PER_PAGE, parser.parse(mPage));
+        }
+
+        long[] durations = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            parser.parse(mPage);
+            durations[i] = System.nanoTime() - start;
+        }
+
+        // Counted apart, counting slows the allocations down
+        Debug.startAllocCounting();
+        Debug.resetThreadAllocSize();
+        for (int i = 0; i < RUNS; i++) {
+            parser.parse(mPage);
+        }
+        long allocatedBytes = Debug.getThreadAllocSize();
+        Debug.stopAllocCounting();
+
+        Arrays.sort(durations);
+        Log.i(TAG, String.format("%s: median %.3f ms, p95 %.3f ms, %d KB allocated per page", name,
+                durations[RUNS / 2] / 1e6,
+                durations[RUNS * 95 / 100] / 1e6,
+                allocatedBytes / RUNS / 1024));
+    }
+}
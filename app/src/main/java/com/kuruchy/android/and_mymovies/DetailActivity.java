@@ -32,6 +32,9 @@ import android.net.Uri;
 import android.support.design.widget.CollapsingToolbarLayout;
 import android.support.design.widget.FloatingActionButton;
 import android.support.design.widget.Snackbar;
+import android.support.v4.app.LoaderManager;
+import android.support.v4.content.CursorLoader;
+import android.support.v4.content.Loader;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
 import android.support.v7.widget.Toolbar;
@@ -43,16 +46,28 @@ import android.widget.RatingBar;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import com.bumptech.glide.DrawableRequestBuilder;
 import com.bumptech.glide.Glide;
 import com.kuruchy.android.and_mymovies.data.MoviesContract;
+import com.kuruchy.android.and_mymovies.utilities.MovieDateUtils;
+import com.kuruchy.android.and_mymovies.utilities.TheMovieDatabaseNetworkUtils;
 
 /**
  * Detail Activity Class.
  *
  * Creates the Detailed view for seeing the Movie's details.
  * Uses {@link "github.com/bumptech/glide/"} to simplify image control.
+ *
+ * The movie is read by a Loader from the Uri the Activity is started with.
  */
-public class DetailActivity extends AppCompatActivity {
+public class DetailActivity extends AppCompatActivity implements
+        LoaderManager.LoaderCallbacks<Cursor> {
+
+    private static final int ID_DETAIL_LOADER = 353;
+
+    // Whether the movie is shown. The fetched trailer and reviews are written back to the
+    // database, so the loader delivers the movie again after it is shown.
+    private boolean mMovieBound;
 
     private ImageView mPosterImage;
     private ImageView mBackDropImage;
@@ -104,82 +119,148 @@ public class DetailActivity extends AppCompatActivity {
 
         mFAB = (FloatingActionButton) findViewById(R.id.favorite_action_button);
 
-        Intent intentThatStartedThisActivity = getIntent();
-
-        if (intentThatStartedThisActivity != null) {
-            if (intentThatStartedThisActivity.hasExtra("movie_obj")) {
-                final Movie mMovie = intentThatStartedThisActivity.getParcelableExtra("movie_obj");
-                this.setTitle(mMovie.getTitle());
-
-                loadFetchExtraMovieData(mMovie, getBaseContext());
-
-                CollapsingToolbarLayout collapsingToolbar =
-                        (CollapsingToolbarLayout) findViewById(R.id.collapsing_toolbar);
-                collapsingToolbar.setTitle(mMovie.getTitle());
-
-                loadBackdrop(mMovie.getBackdrop_path());
-
-                mOverview.setText(mMovie.getOverview());
-                mOriginalTitle.setText(mMovie.getOriginal_title());
-                mTitle.setText(mMovie.getTitle());
-                mReleaseDate.setText(mMovie.getRelease_date());
-
-                mVoteAverageNum.setText((mMovie.getVote_average() / 2) + " / " + mMovie.getVote_count() + " votes");
-                mVoteAverageStar.setRating(mMovie.getVote_average().floatValue() / 2);
-
-                loadTrailerImage(mMovie.getPoster_path());
-
-                mShowReviews.setOnClickListener(new View.OnClickListener() {
-                    @Override
-                    public void onClick(View v) {
-                        mMovieReviews.setText(mMovie.getReviews());
-                        mMovieReviews.setVisibility(View.VISIBLE);
-                        mShowReviews.setText(R.string.reviews_tag);
-                    }
-                });
-
-                mPlayTrailer.setOnClickListener(new View.OnClickListener() {
-                    @Override
-                    public void onClick(View v) {
-                        openWebPage(mMovie.getTrailer_path());
-                    }
-                });
-
-                mFAB.setOnClickListener(new View.OnClickListener() {
-                    @Override
-                    public void onClick(View view) {
-                        int movieId = mMovie.getId();
-                        if(!movieInDatabase(movieId)){
-                            saveMovie(mMovie, MoviesContract.MovieEntry.CONTENT_FAVORITE_URI);
-                        }else{
-                            Snackbar.make(view, "Already in Favorites!", Snackbar.LENGTH_LONG)
-                                    .setAction("Delete", new DeleteListener()).show();
-                        }
-                    }
-                });
-
-                loadTrailerThumbnail(mMovie.getTrailer_thumbnail_path());
+        // The movie is read off the main thread, and shown when it is loaded
+        if (getIntent().getData() != null) {
+            getSupportLoaderManager().initLoader(ID_DETAIL_LOADER, null, this);
+        }
+    }
 
-            }
+    @Override
+    public Loader<Cursor> onCreateLoader(int loaderId, Bundle bundle) {
+        switch (loaderId) {
+
+            case ID_DETAIL_LOADER:
+                return new CursorLoader(this,
+                        getIntent().getData(),
+                        MainActivity.MAIN_MOVIE_PROJECTION,
+                        null,
+                        null,
+                        null);
+
+            default:
+                throw new RuntimeException("Loader Not Implemented: " + loaderId);
+        }
+    }
 
+    @Override
+    public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
+        if (mMovieBound) {
+            return;
         }
+
+        // The movie is gone from the database, there is nothing to show
+        if (data == null || !data.moveToFirst()) {
+            finish();
+            return;
+        }
+
+        mMovieBound = true;
+        bindMovie(new Movie(data));
+    }
+
+    @Override
+    public void onLoaderReset(Loader<Cursor> loader) {
     }
 
+    // Show the movie, and fetch its trailer and reviews
+    private void bindMovie(final Movie mMovie) {
+        this.setTitle(mMovie.getTitle());
+
+        loadFetchExtraMovieData(mMovie, getBaseContext());
+
+        CollapsingToolbarLayout collapsingToolbar =
+                (CollapsingToolbarLayout) findViewById(R.id.collapsing_toolbar);
+        collapsingToolbar.setTitle(mMovie.getTitle());
+
+        loadBackdrop(mMovie.getBackdrop_path(), mMovie.getPoster_path());
+
+        mOverview.setText(mMovie.getOverview());
+        mOriginalTitle.setText(mMovie.getOriginal_title());
+        mTitle.setText(mMovie.getTitle());
+        mReleaseDate.setText(mMovie.getRelease_date());
+
+        mVoteAverageNum.setText((mMovie.getVote_average() / 2) + " / " + mMovie.getVote_count() + " votes");
+        mVoteAverageStar.setRating(mMovie.getVote_average().floatValue() / 2);
+
+        loadTrailerImage(mMovie.getPoster_path());
+
+        mShowReviews.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                mMovieReviews.setText(mMovie.getReviews());
+                mMovieReviews.setVisibility(View.VISIBLE);
+                mShowReviews.setText(R.string.reviews_tag);
+            }
+        });
+
+        mPlayTrailer.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                openWebPage(mMovie.getTrailer_path());
+            }
+        });
+
+        mFAB.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                int movieId = mMovie.getId();
+                if(!movieInDatabase(movieId)){
+                    saveMovie(mMovie, MoviesContract.MovieEntry.CONTENT_FAVORITE_URI);
+                }else{
+                    Snackbar.make(view, "Already in Favorites!", Snackbar.LENGTH_LONG)
+                            .setAction("Delete", new DeleteListener()).show();
+                }
+            }
+        });
+
+        loadTrailerThumbnail(mMovie.getTrailer_thumbnail_path());
+    }
+
+    // Load the poster with Glide, showing the one cached by the grid until it arrives
     private void loadTrailerImage(String imagePath){
+        String posterUrl = TheMovieDatabaseNetworkUtils.buildPosterUrl(imagePath,
+                getImageWidth(mPosterImage), TheMovieDatabaseNetworkUtils.isMeteredConnection(this));
         Glide.with(this)
-                .load(imagePath)
+                .load(posterUrl)
+                .thumbnail(buildGridPosterRequest(imagePath).fitCenter())
                 .fitCenter()
                 .into(mPosterImage);
     }
 
-    // Load Backdrop image with Glide
-    private void loadBackdrop(String imagePath) {
+    // Load Backdrop image with Glide. The grid poster is shown first, then the smallest backdrop
+    // until the one sized for the screen arrives.
+    private void loadBackdrop(String imagePath, String posterPath) {
+        boolean metered = TheMovieDatabaseNetworkUtils.isMeteredConnection(this);
+        int width = getImageWidth(mBackDropImage);
+        String backdropUrl = TheMovieDatabaseNetworkUtils.buildBackdropUrl(imagePath, width, metered);
+        String previewUrl = TheMovieDatabaseNetworkUtils.buildBackdropPreviewUrl(imagePath, width, metered);
+
+        DrawableRequestBuilder<String> thumbnail = buildGridPosterRequest(posterPath);
+        if (previewUrl != null) {
+            thumbnail = Glide.with(this)
+                    .load(previewUrl)
+                    .thumbnail(thumbnail)
+                    .fitCenter();
+        }
         Glide.with(this)
-                .load(imagePath)
+                .load(backdropUrl)
+                .thumbnail(thumbnail)
                 .fitCenter()
                 .into(mBackDropImage);
     }
 
+    // The poster as loaded by the grid, read from Glide's disk cache when the grid showed it
+    private DrawableRequestBuilder<String> buildGridPosterRequest(String posterPath) {
+        return MovieAdapter.buildPosterRequest(this, MovieAdapter.buildGridPosterUrl(this, posterPath));
+    }
+
+    // Width an image view is laid out with, before it is measured. Views without a fixed width
+    // span the screen.
+    private int getImageWidth(ImageView imageView) {
+        int width = imageView.getLayoutParams().width;
+        return width > 0 ? width : getResources().getDisplayMetrics().widthPixels;
+    }
+
     // Load Trailer Thumbnail image with Glide
     private void loadTrailerThumbnail(String imagePath) {
         Glide.with(this)
@@ -215,16 +296,23 @@ public class DetailActivity extends AppCompatActivity {
         }
     }
 
-    // Check if the movie is in Content Provider
+    // Check if the movie is in Content Provider, looking it up by its id
     public boolean movieInDatabase(int movieId){
-        Cursor cursor = getContentResolver().query(MoviesContract.MovieEntry.CONTENT_FAVORITE_URI, null, null, null, null);
+        Uri favoriteMovieUri = MoviesContract.MovieEntry.buildMovieUriWithMovieId(
+                MoviesContract.MovieEntry.CONTENT_FAVORITE_URI, movieId);
 
-        while (cursor.moveToNext()){
-            if (movieId == cursor.getInt(cursor.getColumnIndex(MoviesContract.MovieEntry.COLUMN_MOVIE_ID))){
-                return true;
-            }
+        Cursor cursor = getContentResolver().query(favoriteMovieUri,
+                new String[]{MoviesContract.MovieEntry._ID}, null, null, null);
+
+        if (cursor == null) {
+            return false;
+        }
+
+        try {
+            return cursor.moveToFirst();
+        } finally {
+            cursor.close();
         }
-        return false;
     }
 
     // Returns a ContentValue from a Movie object
@@ -242,7 +330,7 @@ public class DetailActivity extends AppCompatActivity {
         contentValues.put(MoviesContract.MovieEntry.COLUMN_SYNOPSIS, mMovie.getOverview().toString());
         contentValues.put(MoviesContract.MovieEntry.COLUMN_USER_RATING, 5.0);
         contentValues.put(MoviesContract.MovieEntry.COLUMN_GLOBAL_RATING, mMovie.getVote_average());
-        contentValues.put(MoviesContract.MovieEntry.COLUMN_RELEASE_DATE, mMovie.getRelease_date().toString());
+        contentValues.put(MoviesContract.MovieEntry.COLUMN_RELEASE_DATE, MovieDateUtils.toEpochDay(mMovie.getRelease_date()));
         contentValues.put(MoviesContract.MovieEntry.COLUMN_TRAILER_PATH, mMovie.getTrailer_path().toString());
         contentValues.put(MoviesContract.MovieEntry.COLUMN_TRAILER_THUMBNAIL_PATH, mMovie.getTrailer_thumbnail_path().toString());
         contentValues.put(MoviesContract.MovieEntry.COLUMN_BACKDROP_PATH, mMovie.getBackdrop_path().toString());
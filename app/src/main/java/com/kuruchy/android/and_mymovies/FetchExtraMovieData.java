@@ -29,13 +29,15 @@ import android.content.Context;
 import android.net.Uri;
 import android.os.AsyncTask;
 import android.util.Log;
-import android.widget.Toast;
 
 import com.bumptech.glide.Glide;
 import com.kuruchy.android.and_mymovies.data.MoviesContract;
+import com.kuruchy.android.and_mymovies.utilities.SingleFlight;
 import com.kuruchy.android.and_mymovies.utilities.TheMovieDatabaseJsonUtils;
 import com.kuruchy.android.and_mymovies.utilities.TheMovieDatabaseNetworkUtils;
+import com.kuruchy.android.and_mymovies.utilities.TheMovieDatabaseRequestScheduler;
 
+import java.io.IOException;
 import java.net.URL;
 
 /**
@@ -43,11 +45,24 @@ import java.net.URL;
  *
  * Extends from AsyncTask. Allowing to run a movie list update on a background thread,
  * while publishing the results to the UI thread.
+ *
+ * The trailers and reviews are appended to the details of the movie, so they come in a single
+ * request.
  */
 public class FetchExtraMovieData extends AsyncTask<Object, Void, Movie> {
 
+    private static final String YOUTUBE_THUMBNAIL_URL = "http://img.youtube.com/vi/";
+    private static final String YOUTUBE_THUMBNAIL_FILE = "/0.jpg";
+
+    // Details being fetched and parsed, shared by the screens opened on the same movie
+    private static final SingleFlight<Movie> sDetailRequests = new SingleFlight<>();
+
     Context context;
 
+    // Which parts the movie has, only those are stored
+    private boolean mTrailerFetched;
+    private boolean mReviewsFetched;
+
     @Override
     protected Movie doInBackground(Object... params) {
 
@@ -59,29 +74,34 @@ public class FetchExtraMovieData extends AsyncTask<Object, Void, Movie> {
         context = (Context) params[1];
         int movieId = mMovie.getId();
 
-        URL movieReviewRequestURL = TheMovieDatabaseNetworkUtils.buildMovieReviewUrl(movieId);
-        URL movieTrailerRequestURL = TheMovieDatabaseNetworkUtils.buildMovieTrailerUrl(movieId);
+        final URL movieDetailRequestURL = TheMovieDatabaseNetworkUtils.buildMovieDetailUrl(movieId);
 
         try {
-            String jsonMovieReviewResponse = TheMovieDatabaseNetworkUtils
-                    .getResponseFromHttpUrl(movieReviewRequestURL);
-
-            String jsonMovieTrailerResponse = TheMovieDatabaseNetworkUtils
-                    .getResponseFromHttpUrl(movieTrailerRequestURL);
-
-            String[] reviewsArray = TheMovieDatabaseJsonUtils
-                    .getReviewInfoFromJSONData(jsonMovieReviewResponse);
-
-            String[] trailerUrlArray = TheMovieDatabaseJsonUtils
-                    .getVideoInfoFromJSONData(jsonMovieTrailerResponse);
-
-            String trailerId = TheMovieDatabaseNetworkUtils.extractYoutubeId(trailerUrlArray[0]);
-
-            mMovie.setTrailer_path(trailerUrlArray[0]);
-            mMovie.setTrailer_thumbnail_path("http://img.youtube.com/vi/" + trailerId + "/0.jpg");
-            mMovie.setReviews(reviewsArray[0]);
-
-            return mMovie;
+            // The parsed detail is only read here, so it can be shared
+            Movie movieDetail = sDetailRequests.run(String.valueOf(movieId), new SingleFlight.Call<Movie>() {
+                @Override
+                public Movie call() throws IOException {
+                    return TheMovieDatabaseJsonUtils.getMovieDetailFromJsonStream(
+                            TheMovieDatabaseNetworkUtils.getCachedResponseFromHttpUrl(movieDetailRequestURL,
+                                    TheMovieDatabaseRequestScheduler.Priority.DETAIL)
+                                    .getBodyStream());
+                }
+            });
+
+            if (movieDetail.getTrailer_path() != null) {
+                String trailerId = TheMovieDatabaseNetworkUtils.extractYoutubeId(movieDetail.getTrailer_path());
+
+                mMovie.setTrailer_path(movieDetail.getTrailer_path());
+                mMovie.setTrailer_thumbnail_path(YOUTUBE_THUMBNAIL_URL + trailerId + YOUTUBE_THUMBNAIL_FILE);
+                mTrailerFetched = true;
+            }
+
+            if (movieDetail.getReviews() != null) {
+                mMovie.setReviews(movieDetail.getReviews());
+                mReviewsFetched = true;
+            }
+
+            return mTrailerFetched || mReviewsFetched ? mMovie : null;
 
         } catch (Exception e) {
             e.printStackTrace();
@@ -93,18 +113,25 @@ public class FetchExtraMovieData extends AsyncTask<Object, Void, Movie> {
     protected void onPostExecute(Movie mMovie) {
         if (mMovie != null) {
 
-            Glide.with(context).load(mMovie.getTrailer_thumbnail_path()).centerCrop().into(DetailActivity.mTrailerThumbnail);
+            if (mTrailerFetched) {
+                Glide.with(context).load(mMovie.getTrailer_thumbnail_path()).centerCrop().into(DetailActivity.mTrailerThumbnail);
+            }
 
             ContentValues contentValues = new ContentValues();
-            contentValues.put(MoviesContract.MovieEntry.COLUMN_TRAILER_PATH, mMovie.getTrailer_path());
-            contentValues.put(MoviesContract.MovieEntry.COLUMN_TRAILER_THUMBNAIL_PATH, mMovie.getTrailer_thumbnail_path());
-            contentValues.put(MoviesContract.MovieEntry.COLUMN_REVIEWS, mMovie.getReviews());
+            if (mTrailerFetched) {
+                contentValues.put(MoviesContract.MovieEntry.COLUMN_TRAILER_PATH, mMovie.getTrailer_path());
+                contentValues.put(MoviesContract.MovieEntry.COLUMN_TRAILER_THUMBNAIL_PATH, mMovie.getTrailer_thumbnail_path());
+            }
+            if (mReviewsFetched) {
+                contentValues.put(MoviesContract.MovieEntry.COLUMN_REVIEWS, mMovie.getReviews());
+            }
 
 
             // Update the content values via a ContentResolver
-            Uri uriUpdate = MoviesContract.MovieEntry.CONTENT_FAVORITE_URI.buildUpon().appendPath("" + mMovie.getId()).build();
+            Uri uriUpdate = MoviesContract.MovieEntry.buildMovieUriWithMovieId(
+                    MoviesContract.MovieEntry.CONTENT_FAVORITE_URI, mMovie.getId());
             Log.d("", uriUpdate.toString());
             int num = context.getContentResolver().update(uriUpdate, contentValues, null, new String[]{ });
         }
     }
-}
\ No newline at end of file
+}
@@ -29,6 +29,7 @@ import android.content.Intent;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Parcelable;
 import android.support.design.widget.NavigationView;
 import android.support.v4.app.LoaderManager;
 import android.support.v4.content.CursorLoader;
@@ -44,12 +45,17 @@ import android.util.DisplayMetrics;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
-import android.widget.Toast;
 
 import com.kuruchy.android.and_mymovies.data.MoviesContract;
+import com.kuruchy.android.and_mymovies.sync.MoviesPagePrefetcher;
 import com.kuruchy.android.and_mymovies.sync.MoviesSyncUtils;
 import com.kuruchy.android.and_mymovies.utilities.TheMovieDatabaseNetworkUtils;
 
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * Main Activity Class.
  *
@@ -60,8 +66,35 @@ public class MainActivity extends AppCompatActivity implements
         MovieAdapter.MovieAdapterOnClickHandler,
         NavigationView.OnNavigationItemSelectedListener {
 
-    // A constant to save and restore the sorting method that is being used
-    private static final String SORTING_PARAM_EXTRA = "sorting_param";
+    // A constant to save and restore the list that is being shown
+    private static final String CATEGORY_EXTRA = "category";
+
+    // A constant to save and restore the order the movies are shown in
+    private static final String SORT_ORDER_EXTRA = "sort_order";
+
+    // Constants to save and restore the window of the list being read, and the movies of the
+    // windows before it
+    private static final String WINDOW_URI_EXTRA = "window_uri";
+    private static final String SEALED_MOVIE_IDS_EXTRA = "sealed_movie_ids";
+    private static final String SEALED_POSTER_PATHS_EXTRA = "sealed_poster_paths";
+
+    // Movies are read from the database in windows of this size as the grid scrolls
+    private static final int MOVIES_PER_PAGE = 60;
+
+    // Pages of the server kept downloading ahead of the visible one
+    private static final int PAGES_AHEAD = 3;
+
+    // Folder of the cache directory holding the responses of the movies server
+    private static final String RESPONSE_CACHE_DIRECTORY = "movie_responses";
+
+    // Orders the movies can be shown in, sorted by the database
+    private static final String SORT_BY_RATING =
+            MoviesContract.MovieEntry.COLUMN_GLOBAL_RATING + " DESC, " + MoviesContract.MovieEntry.COLUMN_MOVIE_ID + " DESC";
+    private static final String SORT_BY_RELEASE_DATE =
+            MoviesContract.MovieEntry.COLUMN_RELEASE_DATE + " DESC, " + MoviesContract.MovieEntry.COLUMN_MOVIE_ID + " DESC";
+
+    // Order of the favorites, unless the user picked one
+    private static final String SORT_BY_MOVIE_ID = MoviesContract.MovieEntry.COLUMN_MOVIE_ID + " ASC";
 
     // The columns of data that we are interested in displaying within our MainActivity's list of
     // movie data.
@@ -81,6 +114,19 @@ public class MainActivity extends AppCompatActivity implements
             MoviesContract.MovieEntry.COLUMN_REVIEWS
     };
 
+    // The columns the grid needs, the rest of the movie is read when it is clicked. The columns
+    // the lists are sorted by start the next window after the last movie of a window.
+    public static final String[] GRID_MOVIE_PROJECTION = {
+            MoviesContract.MovieEntry.COLUMN_POSTER_PATH,
+            MoviesContract.MovieEntry.COLUMN_MOVIE_ID,
+            MoviesContract.MovieEntry.COLUMN_RANK,
+            MoviesContract.MovieEntry.COLUMN_GLOBAL_RATING,
+            MoviesContract.MovieEntry.COLUMN_RELEASE_DATE
+    };
+
+    // The poster is at INDEX_MOVIE_PATH in both projections
+    public static final int INDEX_GRID_MOVIE_ID = 1;
+
     // The indices of the values are stored in the array of Strings above to more quickly be able to
     // access the data from our query.
     public static final int INDEX_MOVIE_PATH = 0;
@@ -96,17 +142,53 @@ public class MainActivity extends AppCompatActivity implements
     private RecyclerView mRecyclerView;
     private static MovieAdapter mMovieAdapter;
 
+    // The list being shown, one of the categories of TheMovieDatabaseNetworkUtils
+    private String mCategory = TheMovieDatabaseNetworkUtils.TOP_RATED;
+
+    // The order picked by the user, or null for the order of each list
+    private String mSortOrder;
+
+    // The window of the current list being read, null for its first one
+    private Uri mWindowUri;
+
+    private EndlessRecyclerViewScrollListener mScrollListener;
+
+    // Loads the posters of the next rows before they are shown
+    private PosterPreloader mPosterPreloader;
+
+    // The server page last prefetched from
+    private int mPrefetchedFromPage;
+
+    // Lists kept in memory, so switching back to them needs no query, by loader id from the
+    // least recently shown
+    private final LinkedHashMap<Integer, CategorySnapshot> mSnapshots = new LinkedHashMap<>();
+
+    // Lists kept in memory at most, the one shown included
+    private static final int MAX_CACHED_CATEGORIES = 3;
+
+    // A list with its loaded movies and where the user left it
+    private static class CategorySnapshot {
+        final MovieAdapter adapter;
+        Parcelable layoutState;
+        Uri windowUri;
+
+        CategorySnapshot(MovieAdapter adapter) {
+            this.adapter = adapter;
+        }
+    }
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
         TheMovieDatabaseNetworkUtils.setApi_key(getBaseContext().getString(R.string.mdb_id));
+        TheMovieDatabaseNetworkUtils.setResponseCacheDirectory(new File(getCacheDir(), RESPONSE_CACHE_DIRECTORY));
 
         setContentView(R.layout.activity_main);
 
         mRecyclerView = (RecyclerView) findViewById(R.id.recyclerview_movie);
 
-        GridLayoutManager gridLayoutManager
+        final GridLayoutManager gridLayoutManager
                 = new GridLayoutManager(this, calculateNoOfColumns(this));
 
         mRecyclerView.setLayoutManager(gridLayoutManager);
@@ -117,6 +199,13 @@ public class MainActivity extends AppCompatActivity implements
 
         mRecyclerView.setAdapter(mMovieAdapter);
 
+        // If a savedInstanceState exist load the list shown from there, if not use top rated
+        if (savedInstanceState != null) {
+            mCategory = savedInstanceState.getString(CATEGORY_EXTRA, TheMovieDatabaseNetworkUtils.TOP_RATED);
+        }
+        int loaderId = getCurrentLoaderId();
+        mSnapshots.put(loaderId, new CategorySnapshot(mMovieAdapter));
+
         // Menus and Toolbars
 
         Toolbar toolbar = (Toolbar) findViewById(R.id.toolbar);
@@ -132,40 +221,91 @@ public class MainActivity extends AppCompatActivity implements
         navigationView.setNavigationItemSelectedListener(this);
 
 
-        // If a savedInstanceState exist load the sorting param from there, if not use top rated
         if (savedInstanceState != null) {
-            int sortingParam = savedInstanceState.getInt(SORTING_PARAM_EXTRA);
-
-            // Creates a Loader if one doesn't already exist, and starts it. Otherwise
-            // the last created loader is re-used.
-            getSupportLoaderManager().initLoader(sortingParam, null, this);
-        }else {
-            getSupportLoaderManager().initLoader(ID_TOP_RATED_MOVIE_LOADER, null, this);
+            mSortOrder = savedInstanceState.getString(SORT_ORDER_EXTRA);
+            mWindowUri = savedInstanceState.getParcelable(WINDOW_URI_EXTRA);
+            int[] sealedMovieIds = savedInstanceState.getIntArray(SEALED_MOVIE_IDS_EXTRA);
+            String[] sealedPosterPaths = savedInstanceState.getStringArray(SEALED_POSTER_PATHS_EXTRA);
+            if (sealedMovieIds != null && sealedPosterPaths != null) {
+                mMovieAdapter.restoreSealedWindows(sealedMovieIds, sealedPosterPaths);
+            }
         }
 
-        EndlessRecyclerViewScrollListener scrollListener = new EndlessRecyclerViewScrollListener(gridLayoutManager) {
+        // Creates a Loader if one doesn't already exist, and starts it. Otherwise
+        // the last created loader is re-used.
+        getSupportLoaderManager().initLoader(loaderId, null, this);
+
+        mScrollListener = new EndlessRecyclerViewScrollListener(gridLayoutManager) {
             @Override
             public void onLoadMore(int page, int totalItemsCount, RecyclerView view) {
-                loadNextDataFromApi(page);
+                loadNextPage(totalItemsCount);
             }
         };
 
-        mRecyclerView.addOnScrollListener(scrollListener);
+        mRecyclerView.addOnScrollListener(mScrollListener);
 
-        // Starts the Sync task MoviesSyncIntentService
-        MoviesSyncUtils.startImmediateSync(this);
+        mPosterPreloader = new PosterPreloader(this, gridLayoutManager);
+        mRecyclerView.addOnScrollListener(mPosterPreloader);
+
+        // Keep the next pages downloading while the user scrolls
+        mRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                int visiblePage = getServerPage(gridLayoutManager.findLastVisibleItemPosition());
+                if (visiblePage != mPrefetchedFromPage) {
+                    prefetchPagesAfter(visiblePage);
+                }
+            }
+        });
+
+        // Keeps the lists refreshed in the background, and syncs the shown one now if it is
+        // stale. Fresh lists are shown straight from the database.
+        MoviesSyncUtils.initialize(this);
+        if (!TheMovieDatabaseNetworkUtils.FAVORITE.equals(mCategory)) {
+            MoviesSyncUtils.startImmediateSync(this, mCategory);
+        }
     }
 
-    // Append the next page of data into the adapter
-    // This method probably sends out a network request and appends new data items to your adapter.
-    public void loadNextDataFromApi(int offset) {
-        // Send an API request to retrieve appropriate paginated data
-        //  --> Send the request including an offset value (i.e `page`) as a query parameter.
-        //  --> Deserialize and construct new model objects from the API response
-        //  --> Append the new data objects to the existing set of items inside the array of items
-        //  --> Notify the adapter of the new items made with `notifyDataSetChanged()
-        Toast.makeText(getBaseContext(), "Loading More " + offset, Toast.LENGTH_LONG).show();
+    // Append the next window of movies into the adapter, starting after the last movie read
+    public void loadNextPage(int totalItemsCount) {
+        // More movies may be stored after a full window. The adapter keeps the movies of the
+        // window, and the loader reads the next one starting after its last movie.
+        Cursor window = mMovieAdapter.getWindowCursor();
+        if (window != null && window.getCount() >= MOVIES_PER_PAGE && window.moveToLast()) {
+            mWindowUri = MoviesContract.MovieEntry.buildPageUri(getCurrentContentUri(),
+                    MOVIES_PER_PAGE, getCurrentSortOrder(), window);
+            mMovieAdapter.sealWindow();
+            getSupportLoaderManager().restartLoader(getCurrentLoaderId(), null, this);
+        }
 
+        // Make sure the pages following the shown movies are stored. They are appended to the
+        // list and the loader picks them up, each page is only downloaded once.
+        prefetchPagesAfter(getServerPage(totalItemsCount - 1));
+    }
+
+    // Returns the page of the server a position of the grid comes from, starting at 1
+    private static int getServerPage(int position) {
+        return Math.max(position, 0) / TheMovieDatabaseNetworkUtils.MOVIES_PER_PAGE + 1;
+    }
+
+    // Download the pages following the given one at the same time
+    private void prefetchPagesAfter(int page) {
+        mPrefetchedFromPage = page;
+        if (!TheMovieDatabaseNetworkUtils.FAVORITE.equals(mCategory)) {
+            MoviesPagePrefetcher.prefetchPages(this, mCategory, page + 1, PAGES_AHEAD);
+        }
+    }
+
+    // Start the list being shown again from its first window
+    private void resetPaging() {
+        mWindowUri = null;
+        mPrefetchedFromPage = 0;
+        mScrollListener.resetState();
+        mPosterPreloader.cancel();
+
+        // Stop downloading the pages of the other lists
+        MoviesPagePrefetcher.cancelPrefetches(mCategory);
+        MoviesSyncUtils.cancelOtherSyncs(this, mCategory);
     }
 
     // Returns the number of columns due to the display
@@ -183,78 +323,219 @@ public class MainActivity extends AppCompatActivity implements
         switch (loaderId) {
 
             case ID_FAVORITE_MOVIE_LOADER:
-                // URI for all favorite rows of movies data in our movie table
-                Uri favoriteMovieQueryUri = MoviesContract.MovieEntry.CONTENT_FAVORITE_URI;
-
-                // Sorting by id, ascendant
-                String sortOrder = MoviesContract.MovieEntry.COLUMN_MOVIE_ID + " ASC";
+                // URI for the loaded favorite rows of movies data in our movie table
+                Uri favoriteMovieQueryUri = getWindowUri(MoviesContract.MovieEntry.CONTENT_FAVORITE_URI);
 
+                // Sorting by id, ascendant, unless the user picked an order
                 return new CursorLoader(this,
                         favoriteMovieQueryUri,
-                        MAIN_MOVIE_PROJECTION,
+                        GRID_MOVIE_PROJECTION,
                         null,
                         null,
-                        sortOrder);
+                        getCurrentSortOrder());
 
             case ID_POPULAR_MOVIE_LOADER:
-                // URI for all popular rows of movies data in our movie table
-                Uri popularMovieQueryUri = MoviesContract.MovieEntry.CONTENT_POPULAR_URI;
+                // URI for the loaded popular rows of movies data in our movie table
+                Uri popularMovieQueryUri = getWindowUri(MoviesContract.MovieEntry.CONTENT_POPULAR_URI);
 
                 return new CursorLoader(this,
                         popularMovieQueryUri,
-                        MAIN_MOVIE_PROJECTION,
+                        GRID_MOVIE_PROJECTION,
                         null,
                         null,
-                        null);
+                        mSortOrder);
 
             case ID_TOP_RATED_MOVIE_LOADER:
-                // URI for top rated rows of movies data in our movie table
-                Uri topRatedMovieQueryUri = MoviesContract.MovieEntry.CONTENT_TOP_RATED_URI;
+                // URI for the loaded top rated rows of movies data in our movie table
+                Uri topRatedMovieQueryUri = getWindowUri(MoviesContract.MovieEntry.CONTENT_TOP_RATED_URI);
 
                 return new CursorLoader(this,
                         topRatedMovieQueryUri,
-                        MAIN_MOVIE_PROJECTION,
+                        GRID_MOVIE_PROJECTION,
                         null,
                         null,
-                        null);
+                        mSortOrder);
 
             default:
                 throw new RuntimeException("Loader Not Implemented: " + loaderId);
         }
     }
 
+    // Returns the uri of the window of the list being read
+    private Uri getWindowUri(Uri contentUri) {
+        return mWindowUri != null ? mWindowUri : MoviesContract.MovieEntry.buildPageUri(contentUri, MOVIES_PER_PAGE);
+    }
+
+    // Lists kept in memory keep their loader, so they also get the changes of the database
     @Override
     public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
-        mMovieAdapter.swapCursor(data);
+        CategorySnapshot snapshot = mSnapshots.get(loader.getId());
+        if (snapshot != null) {
+            snapshot.adapter.swapCursor(data);
+        }
     }
 
     @Override
     public void onLoaderReset(Loader<Cursor> loader) {
-        mMovieAdapter.swapCursor(null);
+        CategorySnapshot snapshot = mSnapshots.get(loader.getId());
+        if (snapshot != null) {
+            snapshot.adapter.swapCursor(null);
+        }
+    }
+
+    /**
+     * Shows a list. Lists kept in memory are shown as the user left them, their adapter and
+     * loader are reused; other lists are loaded from their first window.
+     *
+     * @param category The list to show
+     */
+    private void showCategory(String category) {
+        // Keep where the user was in the list being left
+        CategorySnapshot leaving = mSnapshots.get(getCurrentLoaderId());
+        if (leaving != null) {
+            leaving.layoutState = mRecyclerView.getLayoutManager().onSaveInstanceState();
+            leaving.windowUri = mWindowUri;
+        }
+
+        mCategory = category;
+        int loaderId = getCurrentLoaderId();
+
+        resetPaging();
+
+        CategorySnapshot snapshot = mSnapshots.remove(loaderId);
+        if (snapshot != null) {
+            mSnapshots.put(loaderId, snapshot);
+            mMovieAdapter = snapshot.adapter;
+            mRecyclerView.setAdapter(mMovieAdapter);
+            mWindowUri = snapshot.windowUri;
+            if (snapshot.layoutState != null) {
+                mRecyclerView.getLayoutManager().onRestoreInstanceState(snapshot.layoutState);
+            }
+            getSupportLoaderManager().initLoader(loaderId, null, this);
+        } else {
+            snapshot = new CategorySnapshot(new MovieAdapter(this, this));
+            mSnapshots.put(loaderId, snapshot);
+            evictSnapshots(MAX_CACHED_CATEGORIES);
+            mMovieAdapter = snapshot.adapter;
+            mRecyclerView.setAdapter(mMovieAdapter);
+            getSupportLoaderManager().restartLoader(loaderId, null, this);
+        }
+
+        if (!TheMovieDatabaseNetworkUtils.FAVORITE.equals(category)) {
+            MoviesSyncUtils.startImmediateSync(this, category);
+        }
+    }
+
+    // Drops the least recently shown lists kept in memory, along with their loaders, until at
+    // most the given number are left. The list shown is never dropped.
+    private void evictSnapshots(int maxSnapshots) {
+        int currentLoaderId = getCurrentLoaderId();
+        Iterator<Map.Entry<Integer, CategorySnapshot>> iterator = mSnapshots.entrySet().iterator();
+        while (mSnapshots.size() > maxSnapshots && iterator.hasNext()) {
+            int loaderId = iterator.next().getKey();
+            if (loaderId == currentLoaderId) {
+                continue;
+            }
+            iterator.remove();
+            getSupportLoaderManager().destroyLoader(loaderId);
+        }
+    }
+
+    // Lists the user is not looking at are loaded again when memory runs low
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            evictSnapshots(1);
+        }
     }
 
     @Override
-    public void onClick(Movie movie) {
+    public void onClick(int movieId) {
+        // The detail screen reads the whole movie itself, looking it up by its id
+        Uri movieUri = MoviesContract.MovieEntry.buildMovieUriWithMovieId(getCurrentContentUri(), movieId);
+
         Context context = this;
         Class destinationClass = DetailActivity.class;
         Intent intentToStartDetailActivity = new Intent(context, destinationClass);
-        intentToStartDetailActivity.putExtra("movie_obj", movie);
+        intentToStartDetailActivity.setData(movieUri);
         startActivity(intentToStartDetailActivity);
     }
     
     @Override
     protected void onSaveInstanceState(Bundle outState) {
         super.onSaveInstanceState(outState);
-        int sortingParam;
-        if(TheMovieDatabaseNetworkUtils.SORTING_PARAM == TheMovieDatabaseNetworkUtils.FAVORITE){
-            sortingParam = ID_FAVORITE_MOVIE_LOADER;
-        }else if (TheMovieDatabaseNetworkUtils.SORTING_PARAM == TheMovieDatabaseNetworkUtils.TOP_RATED){
-            sortingParam = ID_TOP_RATED_MOVIE_LOADER;
-        }else {
-            sortingParam = ID_POPULAR_MOVIE_LOADER;
+        outState.putString(CATEGORY_EXTRA, mCategory);
+        outState.putString(SORT_ORDER_EXTRA, mSortOrder);
+        outState.putParcelable(WINDOW_URI_EXTRA, mWindowUri);
+        outState.putIntArray(SEALED_MOVIE_IDS_EXTRA, mMovieAdapter.getSealedMovieIds());
+        outState.putStringArray(SEALED_POSTER_PATHS_EXTRA, mMovieAdapter.getSealedPosterPaths());
+    }
+
+    // Returns the order the list being shown is read in, null for the rank order of the list
+    private String getCurrentSortOrder() {
+        if (mSortOrder == null && TheMovieDatabaseNetworkUtils.FAVORITE.equals(mCategory)) {
+            return SORT_BY_MOVIE_ID;
+        }
+        return mSortOrder;
+    }
+
+    // Returns the content uri of the list being shown
+    private Uri getCurrentContentUri() {
+        if (TheMovieDatabaseNetworkUtils.FAVORITE.equals(mCategory)) {
+            return MoviesContract.MovieEntry.CONTENT_FAVORITE_URI;
+        } else if (TheMovieDatabaseNetworkUtils.TOP_RATED.equals(mCategory)) {
+            return MoviesContract.MovieEntry.CONTENT_TOP_RATED_URI;
+        } else {
+            return MoviesContract.MovieEntry.CONTENT_POPULAR_URI;
+        }
+    }
+
+    // Returns the id of the loader for the list being shown
+    private int getCurrentLoaderId() {
+        if (TheMovieDatabaseNetworkUtils.FAVORITE.equals(mCategory)) {
+            return ID_FAVORITE_MOVIE_LOADER;
+        } else if (TheMovieDatabaseNetworkUtils.TOP_RATED.equals(mCategory)) {
+            return ID_TOP_RATED_MOVIE_LOADER;
+        } else {
+            return ID_POPULAR_MOVIE_LOADER;
+        }
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        MenuInflater inflater = getMenuInflater();
+        inflater.inflate(R.menu.main, menu);
+
+        if (SORT_BY_RATING.equals(mSortOrder)) {
+            menu.findItem(R.id.sort_by_rating).setChecked(true);
+        } else if (SORT_BY_RELEASE_DATE.equals(mSortOrder)) {
+            menu.findItem(R.id.sort_by_release_date).setChecked(true);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        int id = item.getItemId();
+
+        if (id == R.id.sort_by_list_order) {
+            mSortOrder = null;
+        } else if (id == R.id.sort_by_rating) {
+            mSortOrder = SORT_BY_RATING;
+        } else if (id == R.id.sort_by_release_date) {
+            mSortOrder = SORT_BY_RELEASE_DATE;
+        } else {
+            return super.onOptionsItemSelected(item);
         }
 
-        outState.putInt(SORTING_PARAM_EXTRA, sortingParam);
+        // Let the database sort the current list again, the other lists are sorted when shown
+        item.setChecked(true);
+        evictSnapshots(1);
+        resetPaging();
+        mMovieAdapter.resetWindows();
+        getSupportLoaderManager().restartLoader(getCurrentLoaderId(), null, this);
+        return true;
     }
 
     @Override
@@ -274,22 +555,11 @@ public class MainActivity extends AppCompatActivity implements
         int id = item.getItemId();
 
         if (id == R.id.nav_favorite) {
-            TheMovieDatabaseNetworkUtils.SORTING_PARAM = TheMovieDatabaseNetworkUtils.FAVORITE;
-            mMovieAdapter = new MovieAdapter(this, this);
-            mRecyclerView.setAdapter(mMovieAdapter);
-            getSupportLoaderManager().restartLoader(ID_FAVORITE_MOVIE_LOADER, null, this);
+            showCategory(TheMovieDatabaseNetworkUtils.FAVORITE);
         } else if (id == R.id.nav_top_rated) {
-            TheMovieDatabaseNetworkUtils.SORTING_PARAM = TheMovieDatabaseNetworkUtils.TOP_RATED;
-            mMovieAdapter = new MovieAdapter(this, this);
-            mRecyclerView.setAdapter(mMovieAdapter);
-            MoviesSyncUtils.startImmediateSync(this);
-            getSupportLoaderManager().restartLoader(ID_TOP_RATED_MOVIE_LOADER, null, this);
+            showCategory(TheMovieDatabaseNetworkUtils.TOP_RATED);
         } else if (id == R.id.nav_most_popular) {
-            TheMovieDatabaseNetworkUtils.SORTING_PARAM = TheMovieDatabaseNetworkUtils.POPULAR;
-            mMovieAdapter = new MovieAdapter(this, this);
-            mRecyclerView.setAdapter(mMovieAdapter);
-            MoviesSyncUtils.startImmediateSync(this);
-            getSupportLoaderManager().restartLoader(ID_POPULAR_MOVIE_LOADER, null, this);
+            showCategory(TheMovieDatabaseNetworkUtils.POPULAR);
         } else if (id == R.id.nav_manage) {
 
         } else if (id == R.id.nav_share) {
@@ -29,6 +29,7 @@ import android.os.Parcel;
 import android.os.Parcelable;
 
 import com.kuruchy.android.and_mymovies.data.MoviesContract;
+import com.kuruchy.android.and_mymovies.utilities.MovieDateUtils;
 
 /**
  * Movie Class.
@@ -66,7 +67,8 @@ public class Movie implements Parcelable {
     public Movie(Cursor mCursor) {
         this.poster_path = mCursor.getString(MainActivity.INDEX_MOVIE_PATH);
         this.overview = mCursor.getString(mCursor.getColumnIndex(MoviesContract.MovieEntry.COLUMN_SYNOPSIS));
-        this.release_date = mCursor.getString(mCursor.getColumnIndex(MoviesContract.MovieEntry.COLUMN_RELEASE_DATE));
+        int releaseDateIndex = mCursor.getColumnIndex(MoviesContract.MovieEntry.COLUMN_RELEASE_DATE);
+        this.release_date = mCursor.isNull(releaseDateIndex) ? "" : MovieDateUtils.fromEpochDay(mCursor.getLong(releaseDateIndex));
         this.original_title = mCursor.getString(mCursor.getColumnIndex(MoviesContract.MovieEntry.COLUMN_MOVIE_ORG_TITLE));
         this.original_language = "ELFIC";
         this.title = mCursor.getString(mCursor.getColumnIndex(MoviesContract.MovieEntry.COLUMN_MOVIE_TITLE));
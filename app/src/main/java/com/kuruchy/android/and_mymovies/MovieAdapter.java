@@ -26,14 +26,24 @@ package com.kuruchy.android.and_mymovies;
 
 import android.content.Context;
 import android.database.Cursor;
+import android.os.AsyncTask;
 import android.support.annotation.NonNull;
+import android.support.v7.util.DiffUtil;
 import android.support.v7.widget.RecyclerView;
+import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
 
+import com.bumptech.glide.DrawableRequestBuilder;
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.kuruchy.android.and_mymovies.utilities.TheMovieDatabaseNetworkUtils;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * Movie Adapter Class.
@@ -41,6 +51,9 @@ import com.bumptech.glide.Glide;
  * Extends the RecyclerView Adapter.
  * Adds onClick handlers, creates views items, populates them and returns the information.
  * Uses {@link "square.github.io/picasso/"} to simplify image control.
+ *
+ * The movies are read in windows: the cursor holds the last one, and the movies of the windows
+ * before it are kept once they are sealed.
  */
 public class MovieAdapter extends RecyclerView.Adapter<MovieAdapter.MovieAdapterViewHolder>{
 
@@ -49,18 +62,43 @@ public class MovieAdapter extends RecyclerView.Adapter<MovieAdapter.MovieAdapter
     private final MovieAdapterOnClickHandler mClickHandler;
     private final Context mContext;
 
-    private Cursor mCursor;
+    // Movies shown, read from the last cursor so they outlive it
+    private int[] mMovieIds = new int[0];
+    private String[] mPosterPaths = new String[0];
+
+    // Movies of the sealed windows and of the last cursor, shown once their diff is applied
+    private int[] mLatestMovieIds = mMovieIds;
+    private String[] mLatestPosterPaths = mPosterPaths;
+
+    // Movies of the windows before the one of the cursor
+    private int[] mSealedMovieIds = new int[0];
+    private String[] mSealedPosterPaths = new String[0];
+    private final Set<Integer> mSealedIds = new HashSet<>();
+
+    // The window being shown, kept open by its loader until the next one is delivered
+    private Cursor mWindowCursor;
+
+    // Bumped on every new cursor, so diffs computed for older ones are dropped
+    private int mGeneration;
+
+    // Width of the grid cells, and whether posters are loaded over a metered connection,
+    // checked again with every new cursor
+    private final int mPosterWidth;
+    private boolean mMetered;
 
     /**
      * The interface that receives onClick messages.
      */
     public interface MovieAdapterOnClickHandler {
-        void onClick(Movie viewClicked);
+        void onClick(int movieIdClicked);
     }
 
     public MovieAdapter(@NonNull Context context, MovieAdapterOnClickHandler clickHandler){
         mContext = context;
         mClickHandler = clickHandler;
+        mPosterWidth = getPosterWidth(context);
+        mMetered = TheMovieDatabaseNetworkUtils.isMeteredConnection(context);
+        setHasStableIds(true);
     }
 
     public class MovieAdapterViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener{
@@ -74,8 +112,10 @@ public class MovieAdapter extends RecyclerView.Adapter<MovieAdapter.MovieAdapter
 
         @Override
         public void onClick(View view) {
-            mCursor.moveToPosition(this.getAdapterPosition());
-            mClickHandler.onClick(new Movie(mCursor));
+            int position = this.getAdapterPosition();
+            if (position != RecyclerView.NO_POSITION) {
+                mClickHandler.onClick(mMovieIds[position]);
+            }
         }
     }
 
@@ -94,30 +134,224 @@ public class MovieAdapter extends RecyclerView.Adapter<MovieAdapter.MovieAdapter
     @Override
     public void onBindViewHolder(MovieAdapterViewHolder movieAdapterViewHolder, int position) {
 
-        mCursor.moveToPosition(position);
-
-        Glide.with(movieAdapterViewHolder.mMovieImageView.getContext())
-                .load(mCursor.getString(MainActivity.INDEX_MOVIE_PATH))
+        buildPosterRequest(movieAdapterViewHolder.mMovieImageView.getContext(), getPosterUrl(position))
                 .placeholder(R.drawable.placeholder)
                 .error(R.drawable.error)
-                .centerCrop()
                 .into(movieAdapterViewHolder.mMovieImageView);
     }
 
+    /**
+     * Builds the Glide request of a poster of the grid. The PosterPreloader builds the same one,
+     * so the posters it loads are found in the memory cache. The downloaded image is kept on
+     * disk too, so the detail screen can show it at its own size right away.
+     *
+     * @param context Context of the grid
+     * @param posterUrl The poster to load
+     * @return The request, to be loaded into a view or preloaded
+     */
+    static DrawableRequestBuilder<String> buildPosterRequest(Context context, String posterUrl) {
+        return Glide.with(context)
+                .load(posterUrl)
+                .diskCacheStrategy(DiskCacheStrategy.ALL)
+                .centerCrop();
+    }
+
+    /**
+     * Returns the URL of the poster of the movie at a position, in the size of the grid cells.
+     */
+    String getPosterUrl(int position) {
+        return TheMovieDatabaseNetworkUtils.buildPosterUrl(mPosterPaths[position], mPosterWidth, mMetered);
+    }
+
+    /**
+     * Returns the URL a poster is shown with in the grid, so other screens can reuse the
+     * image already loaded for it.
+     *
+     * @param context Context used to measure the screen and check the connection
+     * @param posterPath The TMDB path of the poster
+     * @return The URL of the poster, null if the movie has none
+     */
+    static String buildGridPosterUrl(Context context, String posterPath) {
+        return TheMovieDatabaseNetworkUtils.buildPosterUrl(posterPath, getPosterWidth(context),
+                TheMovieDatabaseNetworkUtils.isMeteredConnection(context));
+    }
+
+    // The grid splits the width of the screen between its columns
+    private static int getPosterWidth(Context context) {
+        return context.getResources().getDisplayMetrics().widthPixels
+                / MainActivity.calculateNoOfColumns(context);
+    }
+
     @Override
     public int getItemCount() {
-        if (null == mCursor) return 0;
-        return mCursor.getCount();
+        return mMovieIds.length;
+    }
+
+    // Movies are identified by their id, so views follow them when the list changes
+    @Override
+    public long getItemId(int position) {
+        return mMovieIds[position];
     }
 
     /**
-     * Method to swap the cursor
+     * Method to swap the cursor of the window. The movies of the cursor follow the sealed ones,
+     * and are compared with the ones shown on a background thread: only the movies inserted,
+     * removed, moved or changed are notified, so the posters already shown are not loaded again.
      *
      * @param newCursor the new cursor to use as MovieAdapter's data source
      */
     void swapCursor(Cursor newCursor) {
-        mCursor = newCursor;
-        notifyDataSetChanged();
+        final int generation = ++mGeneration;
+        mMetered = TheMovieDatabaseNetworkUtils.isMeteredConnection(mContext);
+        mWindowCursor = newCursor;
+
+        // Read the cursor now, the loader closes it once a newer one is delivered. Movies that
+        // moved up into a sealed window are already shown there.
+        int windowCount = newCursor == null ? 0 : newCursor.getCount();
+        int count = mSealedMovieIds.length;
+        int[] newMovieIds = Arrays.copyOf(mSealedMovieIds, count + windowCount);
+        String[] newPosterPaths = Arrays.copyOf(mSealedPosterPaths, count + windowCount);
+        for (int i = 0; i < windowCount; i++) {
+            newCursor.moveToPosition(i);
+            int movieId = newCursor.getInt(MainActivity.INDEX_GRID_MOVIE_ID);
+            if (!mSealedIds.contains(movieId)) {
+                newMovieIds[count] = movieId;
+                newPosterPaths[count] = newCursor.getString(MainActivity.INDEX_MOVIE_PATH);
+                count++;
+            }
+        }
+        showMovies(generation, Arrays.copyOf(newMovieIds, count), Arrays.copyOf(newPosterPaths, count));
+    }
+
+    // Shows a new list of movies, notifying the changes from the one shown
+    private void showMovies(final int generation, final int[] newMovieIds, final String[] newPosterPaths) {
+        final int count = newMovieIds.length;
+        mLatestMovieIds = newMovieIds;
+        mLatestPosterPaths = newPosterPaths;
+
+        // Nothing to compare with, show the movies right away
+        if (mMovieIds.length == 0 || count == 0) {
+            int oldCount = mMovieIds.length;
+            mMovieIds = newMovieIds;
+            mPosterPaths = newPosterPaths;
+            if (oldCount > 0) {
+                notifyItemRangeRemoved(0, oldCount);
+            }
+            if (count > 0) {
+                notifyItemRangeInserted(0, count);
+            }
+            return;
+        }
+
+        final MovieDiffCallback diffCallback =
+                new MovieDiffCallback(mMovieIds, mPosterPaths, newMovieIds, newPosterPaths);
+
+        new AsyncTask<Void, Void, DiffUtil.DiffResult>() {
+            @Override
+            protected DiffUtil.DiffResult doInBackground(Void... voids) {
+                return DiffUtil.calculateDiff(diffCallback);
+            }
+
+            @Override
+            protected void onPostExecute(DiffUtil.DiffResult diffResult) {
+                // A newer cursor arrived meanwhile, its own diff applies instead
+                if (generation != mGeneration) {
+                    return;
+                }
+                mMovieIds = newMovieIds;
+                mPosterPaths = newPosterPaths;
+                diffResult.dispatchUpdatesTo(MovieAdapter.this);
+            }
+        }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
+    /**
+     * Returns the cursor of the window being shown, null if none was delivered since the last
+     * one was sealed.
+     */
+    Cursor getWindowCursor() {
+        return mWindowCursor;
+    }
+
+    /**
+     * Seals the window being shown, its movies are kept while the cursor of the next window is
+     * read. The loader of the window can be restarted on the next one right after.
+     */
+    void sealWindow() {
+        mSealedMovieIds = mLatestMovieIds;
+        mSealedPosterPaths = mLatestPosterPaths;
+        for (int movieId : mLatestMovieIds) {
+            mSealedIds.add(movieId);
+        }
+        mWindowCursor = null;
+    }
+
+    /**
+     * Drops the sealed windows, the list is read again from its first window.
+     */
+    void resetWindows() {
+        mSealedMovieIds = new int[0];
+        mSealedPosterPaths = new String[0];
+        mSealedIds.clear();
+        mWindowCursor = null;
+    }
+
+    int[] getSealedMovieIds() {
+        return mSealedMovieIds;
+    }
+
+    String[] getSealedPosterPaths() {
+        return mSealedPosterPaths;
+    }
+
+    /**
+     * Restores the sealed windows of a list, and shows them until the window following them is
+     * delivered.
+     *
+     * @param movieIds The ids of the sealed movies
+     * @param posterPaths Their posters
+     */
+    void restoreSealedWindows(int[] movieIds, String[] posterPaths) {
+        resetWindows();
+        showMovies(++mGeneration, movieIds, posterPaths);
+        sealWindow();
+    }
+
+    /**
+     * Compares two lists of movies by their id, a movie changed if its poster did.
+     */
+    private static class MovieDiffCallback extends DiffUtil.Callback {
+        private final int[] mOldMovieIds;
+        private final String[] mOldPosterPaths;
+        private final int[] mNewMovieIds;
+        private final String[] mNewPosterPaths;
+
+        MovieDiffCallback(int[] oldMovieIds, String[] oldPosterPaths, int[] newMovieIds, String[] newPosterPaths) {
+            mOldMovieIds = oldMovieIds;
+            mOldPosterPaths = oldPosterPaths;
+            mNewMovieIds = newMovieIds;
+            mNewPosterPaths = newPosterPaths;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOldMovieIds.length;
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNewMovieIds.length;
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOldMovieIds[oldItemPosition] == mNewMovieIds[newItemPosition];
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return TextUtils.equals(mOldPosterPaths[oldItemPosition], mNewPosterPaths[newItemPosition]);
+        }
     }
 
     public void setmMoviesData(Movie[] mMoviesData) {
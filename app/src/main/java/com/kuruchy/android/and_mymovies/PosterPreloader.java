@@ -0,0 +1,133 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017.  Bruno Retolaza
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kuruchy.android.and_mymovies;
+
+import android.content.Context;
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.request.target.Target;
+
+import java.util.ArrayDeque;
+
+/**
+ * Poster Preloader Class.
+ *
+ * Scroll listener of the movie grid loading the posters of the next rows, in the scroll
+ * direction, into the memory cache of Glide before they are bound. Posters are loaded at the size
+ * of the cells, so binding them is a cache hit. Turning around cancels the posters still loading
+ * the other way.
+ */
+public class PosterPreloader extends RecyclerView.OnScrollListener {
+
+    // Rows of posters loaded ahead of the visible ones
+    private static final int PRELOAD_ROWS = 3;
+
+    private final Context mContext;
+    private final GridLayoutManager mLayoutManager;
+
+    // Posters loading, the oldest first
+    private final ArrayDeque<Target<?>> mPreloads = new ArrayDeque<>();
+
+    // Whether the last scroll went down the grid
+    private boolean mScrollingDown = true;
+
+    // Positions already preloaded in the current direction, from the first to the last one
+    private int mPreloadedStart = -1;
+    private int mPreloadedEnd = -1;
+
+    public PosterPreloader(Context context, GridLayoutManager layoutManager) {
+        mContext = context;
+        mLayoutManager = layoutManager;
+    }
+
+    @Override
+    public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+        if (dy == 0 || !(recyclerView.getAdapter() instanceof MovieAdapter)) {
+            return;
+        }
+        MovieAdapter adapter = (MovieAdapter) recyclerView.getAdapter();
+
+        boolean scrollingDown = dy > 0;
+        if (scrollingDown != mScrollingDown) {
+            mScrollingDown = scrollingDown;
+            cancel();
+        }
+
+        // The size posters are bound at, taken from a cell on screen
+        View cell = mLayoutManager.findViewByPosition(mLayoutManager.findFirstVisibleItemPosition());
+        if (cell == null) {
+            return;
+        }
+        MovieAdapter.MovieAdapterViewHolder holder =
+                (MovieAdapter.MovieAdapterViewHolder) recyclerView.getChildViewHolder(cell);
+        int width = holder.mMovieImageView.getWidth();
+        int height = holder.mMovieImageView.getHeight();
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+
+        int preloadCount = mLayoutManager.getSpanCount() * PRELOAD_ROWS;
+        int start;
+        int end;
+        if (scrollingDown) {
+            start = mLayoutManager.findLastVisibleItemPosition() + 1;
+            end = Math.min(start + preloadCount, adapter.getItemCount()) - 1;
+        } else {
+            end = mLayoutManager.findFirstVisibleItemPosition() - 1;
+            start = Math.max(end - preloadCount + 1, 0);
+        }
+
+        for (int position = start; position <= end; position++) {
+            if (position >= mPreloadedStart && position <= mPreloadedEnd) {
+                continue;
+            }
+            preload(adapter.getPosterUrl(position), width, height, preloadCount);
+        }
+        mPreloadedStart = start;
+        mPreloadedEnd = end;
+    }
+
+    // Starts loading a poster, dropping the oldest load once too many are running
+    private void preload(String posterUrl, int width, int height, int maxPreloads) {
+        mPreloads.addLast(MovieAdapter.buildPosterRequest(mContext, posterUrl).preload(width, height));
+        while (mPreloads.size() > maxPreloads) {
+            Glide.clear(mPreloads.removeFirst());
+        }
+    }
+
+    /**
+     * Cancels the posters still loading, e.g. when the grid shows another list.
+     */
+    public void cancel() {
+        while (!mPreloads.isEmpty()) {
+            Glide.clear(mPreloads.removeFirst());
+        }
+        mPreloadedStart = -1;
+        mPreloadedEnd = -1;
+    }
+}
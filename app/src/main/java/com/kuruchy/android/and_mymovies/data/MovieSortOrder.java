@@ -0,0 +1,166 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017.  Bruno Retolaza
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kuruchy.android.and_mymovies.data;
+
+import android.database.Cursor;
+import android.net.Uri;
+
+import com.kuruchy.android.and_mymovies.data.MoviesContract.MovieEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+* MovieSortOrder
+*
+* An order the movies directories are read in, made of plain columns that end with the movie id,
+* so no two movies sort the same. The directories are read in windows: each one starts after the
+* last movie of the previous one, whose sort key is passed in the "after_" query parameters.
+*
+*/
+class MovieSortOrder {
+
+	// Rank order of the directories, the movie id breaks ties
+	static final String RANK_ORDER =
+			MovieEntry.COLUMN_RANK + " ASC, " + MovieEntry.COLUMN_MOVIE_ID + " ASC";
+
+	// Columns of the order, and whether each one is descending
+	private final String[] mColumns;
+	private final boolean[] mDescending;
+
+	private MovieSortOrder(String[] columns, boolean[] descending) {
+		mColumns = columns;
+		mDescending = descending;
+	}
+
+	/**
+	 * Parses a sort order made of columns, each one optionally followed by ASC or DESC.
+	 *
+	 * @param sortOrder The order, null for the rank order
+	 * @return The parsed order
+	 * @throws IllegalArgumentException If the order is not made of plain columns ending with the
+	 * movie id, so windows can't be read in it
+	 */
+	static MovieSortOrder parse(String sortOrder) {
+		if (sortOrder == null) {
+			sortOrder = RANK_ORDER;
+		}
+
+		String[] terms = sortOrder.split(",");
+		String[] columns = new String[terms.length];
+		boolean[] descending = new boolean[terms.length];
+		for (int i = 0; i < terms.length; i++) {
+			String[] words = terms[i].trim().split("\\s+");
+			if (words.length > 2 || !words[0].matches("\\w+") || (words.length == 2
+					&& !words[1].equalsIgnoreCase("ASC") && !words[1].equalsIgnoreCase("DESC"))) {
+				throw new IllegalArgumentException("Windows can't be read in the order: " + sortOrder);
+			}
+			columns[i] = words[0];
+			descending[i] = words.length == 2 && words[1].equalsIgnoreCase("DESC");
+		}
+
+		if (!MovieEntry.COLUMN_MOVIE_ID.equals(columns[columns.length - 1])) {
+			throw new IllegalArgumentException("Windows need an order ending with the movie id: " + sortOrder);
+		}
+		return new MovieSortOrder(columns, descending);
+	}
+
+	/**
+	 * Adds the sort key of a movie to a uri, as its "after_" query parameters. NULL values are
+	 * left out.
+	 *
+	 * @param builder The builder of the uri
+	 * @param cursor A cursor on the movie, with every column of the order
+	 */
+	void appendAfterParameters(Uri.Builder builder, Cursor cursor) {
+		for (String column : mColumns) {
+			int index = cursor.getColumnIndexOrThrow(column);
+			String value;
+			switch (cursor.getType(index)) {
+				case Cursor.FIELD_TYPE_NULL:
+					continue;
+				case Cursor.FIELD_TYPE_INTEGER:
+					value = String.valueOf(cursor.getLong(index));
+					break;
+				case Cursor.FIELD_TYPE_FLOAT:
+					// Written back in full, so the movie compares equal to itself
+					value = String.valueOf(cursor.getDouble(index));
+					break;
+				default:
+					value = cursor.getString(index);
+					break;
+			}
+			builder.appendQueryParameter(MoviesContract.QUERY_PARAMETER_AFTER_PREFIX + column, value);
+		}
+	}
+
+	/**
+	 * Builds the selection of the movies sorting after the sort key given by the "after_" query
+	 * parameters of a uri. The key is compared column by column, the first one that differs
+	 * decides. A missing parameter stands for NULL, which sorts first as in SQLite.
+	 *
+	 * @param uri The uri of the window
+	 * @param selectionArgs The list the arguments of the selection are added to
+	 * @return The selection
+	 */
+	String buildAfterSelection(Uri uri, List<String> selectionArgs) {
+		StringBuilder selection = new StringBuilder();
+
+		// The previous columns equal to the key, with their arguments
+		StringBuilder sameKey = new StringBuilder();
+		List<String> sameKeyArgs = new ArrayList<>();
+
+		for (int i = 0; i < mColumns.length; i++) {
+			String column = mColumns[i];
+			String value = uri.getQueryParameter(MoviesContract.QUERY_PARAMETER_AFTER_PREFIX + column);
+
+			// Nothing sorts after NULL in a descending column
+			String after;
+			if (value == null) {
+				after = mDescending[i] ? null : column + " IS NOT NULL";
+			} else {
+				after = mDescending[i] ? "(" + column + " < ? OR " + column + " IS NULL)" : column + " > ?";
+			}
+
+			if (after != null) {
+				if (selection.length() > 0) {
+					selection.append(" OR ");
+				}
+				selection.append('(').append(sameKey).append(after).append(')');
+				selectionArgs.addAll(sameKeyArgs);
+				if (value != null) {
+					selectionArgs.add(value);
+				}
+			}
+
+			sameKey.append(column).append(value == null ? " IS NULL" : " = ?").append(" AND ");
+			if (value != null) {
+				sameKeyArgs.add(value);
+			}
+		}
+
+		return selection.length() > 0 ? selection.toString() : "0";
+	}
+}
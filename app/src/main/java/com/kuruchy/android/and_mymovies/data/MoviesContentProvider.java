@@ -25,19 +25,35 @@
 package com.kuruchy.android.and_mymovies.data;
 
 import android.content.ContentProvider;
-import android.content.ContentUris;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
 import android.support.annotation.NonNull;
 
+import com.kuruchy.android.and_mymovies.data.MoviesContract.CategoryEntry;
+import com.kuruchy.android.and_mymovies.data.MoviesContract.MovieEntry;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
 /*
 * MoviesContentProvider
 *
 * Content Provider Class for accessing the Database.
 *
+* Every movie is stored once in the movies table, and each category lists its movies through the
+* category_membership table. The movies directories expose both joined, as one flat table.
+*
 */
 public class MoviesContentProvider extends ContentProvider{
 
@@ -45,11 +61,25 @@ public class MoviesContentProvider extends ContentProvider{
 	private static final UriMatcher sUriMatcher = buildUriMatcher();
 	private MoviesDBHelper mFavoriteMoviesDBHelper;
 
+	// Uris changed while a batch is being applied, notified once the batch is committed
+	private final ThreadLocal<Set<Uri>> mPendingNotifications = new ThreadLocal<>();
+
 	// Codes for the UriMatcher
 	private static final int FAVORITE_MOVIES     = 100;
 	private static final int TOP_RATED_MOVIES    = 200;
 	private static final int MOST_POPULAR_MOVIES = 300;
 	private static final int FAVORITE_MOVIE_WITH_ID = 101;
+	private static final int FAVORITE_MOVIE_WITH_MOVIE_ID     = 102;
+	private static final int TOP_RATED_MOVIE_WITH_MOVIE_ID    = 202;
+	private static final int MOST_POPULAR_MOVIE_WITH_MOVIE_ID = 302;
+
+	private static final String MOVIE_ID_SELECTION = MovieEntry.COLUMN_MOVIE_ID + "=?";
+	private static final String ID_SELECTION = MovieEntry._ID + "=?";
+
+	// Movies joined with their category. Joining USING the movie id leaves a single movie_id column.
+	private static final String CATEGORY_MOVIES_TABLES = MovieEntry.TABLE_NAME +
+			" INNER JOIN " + CategoryEntry.TABLE_NAME +
+			" USING (" + MovieEntry.COLUMN_MOVIE_ID + ")";
 
 	private static UriMatcher buildUriMatcher(){
 
@@ -63,6 +93,11 @@ public class MoviesContentProvider extends ContentProvider{
 
 		matcher.addURI(MoviesContract.AUTHORITY, MoviesContract.PATH_FAVORITE_MOVIES + "/#", FAVORITE_MOVIE_WITH_ID);
 
+		// Single movies looked up by their movie id, e.g. favorite/movie/550
+		matcher.addURI(MoviesContract.AUTHORITY, MoviesContract.PATH_FAVORITE_MOVIES + "/" + MoviesContract.PATH_MOVIE + "/#", FAVORITE_MOVIE_WITH_MOVIE_ID);
+		matcher.addURI(MoviesContract.AUTHORITY, MoviesContract.PATH_TOP_RATED_MOVIES + "/" + MoviesContract.PATH_MOVIE + "/#", TOP_RATED_MOVIE_WITH_MOVIE_ID);
+		matcher.addURI(MoviesContract.AUTHORITY, MoviesContract.PATH_POPULAR_MOVIES + "/" + MoviesContract.PATH_MOVIE + "/#", MOST_POPULAR_MOVIE_WITH_MOVIE_ID);
+
 		return matcher;	
 	}
 
@@ -82,8 +117,13 @@ public class MoviesContentProvider extends ContentProvider{
 				// Directory
 				return "vnd.android.cursor.dir" + "/" + MoviesContract.AUTHORITY + "/" + MoviesContract.PATH_FAVORITE_MOVIES;
 			case FAVORITE_MOVIE_WITH_ID:
+			case FAVORITE_MOVIE_WITH_MOVIE_ID:
 				// Single item type
 				return "vnd.android.cursor.item" + "/" + MoviesContract.AUTHORITY + "/" + MoviesContract.PATH_FAVORITE_MOVIES;
+			case TOP_RATED_MOVIE_WITH_MOVIE_ID:
+				return "vnd.android.cursor.item" + "/" + MoviesContract.AUTHORITY + "/" + MoviesContract.PATH_TOP_RATED_MOVIES;
+			case MOST_POPULAR_MOVIE_WITH_MOVIE_ID:
+				return "vnd.android.cursor.item" + "/" + MoviesContract.AUTHORITY + "/" + MoviesContract.PATH_POPULAR_MOVIES;
 			default:
 				throw new UnsupportedOperationException("Unknown uri: " + uri);
 		}
@@ -99,31 +139,57 @@ public class MoviesContentProvider extends ContentProvider{
 		int match = sUriMatcher.match(uri);
 		Cursor retCursor;
 
+		// Only the movies of the category behind the uri
+		SQLiteQueryBuilder queryBuilder = new SQLiteQueryBuilder();
+		queryBuilder.setTables(CATEGORY_MOVIES_TABLES);
+		queryBuilder.appendWhere(CategoryEntry.COLUMN_CATEGORY + " = ");
+		queryBuilder.appendWhereEscapeString(getCategory(uri));
+
 		// Query for the different movies directory
 		switch (match) {
 			case FAVORITE_MOVIES:
-				retCursor =  db.query(MoviesContract.MovieEntry.FAVORITE_TABLE_NAME,
-						projection,
-                        selection,
-						selectionArgs,
-						null,
-						null,
-						sortOrder);
-				break;
             case TOP_RATED_MOVIES:
-                retCursor =  db.query(MoviesContract.MovieEntry.TOP_RATED_TABLE_NAME,
+            case MOST_POPULAR_MOVIES:
+                // Windows are read with a keyset on the sort order, so no rows are skipped over
+                if (uri.getQueryParameter(MoviesContract.QUERY_PARAMETER_AFTER_MOVIE_ID) != null) {
+                    List<String> afterArgs = new ArrayList<>();
+                    String afterSelection = MovieSortOrder.parse(sortOrder).buildAfterSelection(uri, afterArgs);
+
+                    // The arguments of appendWhere go before the ones of the selection
+                    queryBuilder.appendWhere(" AND (" + afterSelection + ")");
+                    selectionArgs = DatabaseUtils.appendSelectionArgs(
+                            afterArgs.toArray(new String[afterArgs.size()]), selectionArgs);
+                }
+
+                // The limit is pushed into SQL, so only the rows asked for are read
+                String limit = uri.getQueryParameter(MoviesContract.QUERY_PARAMETER_LIMIT);
+
+                retCursor = queryBuilder.query(db,
                         projection,
                         selection,
                         selectionArgs,
                         null,
                         null,
+                        sortOrder != null ? sortOrder : MovieSortOrder.RANK_ORDER,
+                        limit != null ? String.valueOf(parseQueryParameter(uri, limit)) : null);
+                break;
+            case FAVORITE_MOVIE_WITH_ID:
+                retCursor = queryBuilder.query(db,
+                        projection,
+                        ID_SELECTION,
+                        new String[]{uri.getLastPathSegment()},
+                        null,
+                        null,
                         sortOrder);
                 break;
-            case MOST_POPULAR_MOVIES:
-                retCursor =  db.query(MoviesContract.MovieEntry.MOST_POPULAR_TABLE_NAME,
+            case FAVORITE_MOVIE_WITH_MOVIE_ID:
+            case TOP_RATED_MOVIE_WITH_MOVIE_ID:
+            case MOST_POPULAR_MOVIE_WITH_MOVIE_ID:
+                // Point lookup on the category primary key and the unique movie id
+                retCursor = queryBuilder.query(db,
                         projection,
-                        selection,
-                        selectionArgs,
+                        MOVIE_ID_SELECTION,
+                        new String[]{uri.getLastPathSegment()},
                         null,
                         null,
                         sortOrder);
@@ -151,32 +217,15 @@ public class MoviesContentProvider extends ContentProvider{
 
         // URI to be returned
         Uri returnUri;
-        long id;
 
         switch (match) {
             case FAVORITE_MOVIES:
-                // Insert new values into the database
-                id = db.insert(MoviesContract.MovieEntry.FAVORITE_TABLE_NAME, null, values);
-                if ( id > 0 ) {
-                    returnUri = ContentUris.withAppendedId(MoviesContract.MovieEntry.CONTENT_FAVORITE_URI, id);
-                } else {
-                    throw new android.database.SQLException("Failed to insert row into " + uri);
-                }
-                break;
             case TOP_RATED_MOVIES:
-                // Insert new values into the database
-                id = db.insert(MoviesContract.MovieEntry.TOP_RATED_TABLE_NAME, null, values);
-                if ( id > 0 ) {
-                    returnUri = ContentUris.withAppendedId(MoviesContract.MovieEntry.CONTENT_TOP_RATED_URI, id);
-                } else {
-                    throw new android.database.SQLException("Failed to insert row into " + uri);
-                }
-                break;
             case MOST_POPULAR_MOVIES:
-                // Insert new values into the database
-                id = db.insert(MoviesContract.MovieEntry.MOST_POPULAR_TABLE_NAME, null, values);
-                if ( id > 0 ) {
-                    returnUri = ContentUris.withAppendedId(MoviesContract.MovieEntry.CONTENT_POPULAR_URI, id);
+                // Insert or refresh the movie, and list it in the category
+                if (insertMovies(db, getCategory(uri), new ContentValues[]{values}) > 0) {
+                    returnUri = MovieEntry.buildMovieUriWithMovieId(uri,
+                            values.getAsInteger(MovieEntry.COLUMN_MOVIE_ID));
                 } else {
                     throw new android.database.SQLException("Failed to insert row into " + uri);
                 }
@@ -186,7 +235,7 @@ public class MoviesContentProvider extends ContentProvider{
         }
 
         // Notify the resolver if the uri has been changed, and return the newly inserted URI
-        getContext().getContentResolver().notifyChange(uri, null);
+        notifyChange(uri);
 
         // Return constructed uri (this points to the newly inserted row of data)
         return returnUri;
@@ -205,19 +254,21 @@ public class MoviesContentProvider extends ContentProvider{
 
         switch (match) {
             case FAVORITE_MOVIES:
-                moviesDeleted = db.delete(MoviesContract.MovieEntry.FAVORITE_TABLE_NAME, null, null);
-                break;
             case TOP_RATED_MOVIES:
-                moviesDeleted = db.delete(MoviesContract.MovieEntry.TOP_RATED_TABLE_NAME, null, null);
-                break;
             case MOST_POPULAR_MOVIES:
-                moviesDeleted = db.delete(MoviesContract.MovieEntry.MOST_POPULAR_TABLE_NAME, null, null);
+                // A null selection deletes the whole directory
+                moviesDeleted = deleteFromCategory(db, getCategory(uri), selection, selectionArgs);
                 break;
             case FAVORITE_MOVIE_WITH_ID:
                 // Get the movie ID from the URI path
                 String id = uri.getPathSegments().get(1);
                 // Use selections/selectionArgs to filter for this ID
-                moviesDeleted = db.delete(MoviesContract.MovieEntry.FAVORITE_TABLE_NAME, "_id=?", new String[]{id});
+                moviesDeleted = deleteFromCategory(db, CategoryEntry.FAVORITE, ID_SELECTION, new String[]{id});
+                break;
+            case FAVORITE_MOVIE_WITH_MOVIE_ID:
+            case TOP_RATED_MOVIE_WITH_MOVIE_ID:
+            case MOST_POPULAR_MOVIE_WITH_MOVIE_ID:
+                moviesDeleted = deleteFromCategory(db, getCategory(uri), MOVIE_ID_SELECTION, new String[]{uri.getLastPathSegment()});
                 break;
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
@@ -225,7 +276,7 @@ public class MoviesContentProvider extends ContentProvider{
 
         // Notify the resolver of a change and return the number of items deleted
         if (moviesDeleted != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
         }
 
         // Return the number of movies deleted
@@ -234,29 +285,353 @@ public class MoviesContentProvider extends ContentProvider{
 
 	@Override
 	public int update(@NonNull Uri uri, ContentValues contentValues, String selection, String[] selectionArgs){
+
+        // Get access to the database
+        final SQLiteDatabase db = mFavoriteMoviesDBHelper.getWritableDatabase();
+
         //Keep track of if an update occurs
         int moviesUpdated;
 
         int match = sUriMatcher.match(uri);
 
         switch (match) {
+            case FAVORITE_MOVIES:
+            case TOP_RATED_MOVIES:
+            case MOST_POPULAR_MOVIES:
+                // Update the movies of a directory matching the selection
+                moviesUpdated = updateInCategory(db, getCategory(uri), contentValues, selection, selectionArgs);
+                break;
             case FAVORITE_MOVIE_WITH_ID:
                 // Update a single movie by getting the id
                 String id = uri.getPathSegments().get(1);
                 // Using selections
-                moviesUpdated = mFavoriteMoviesDBHelper.getWritableDatabase().update(MoviesContract.MovieEntry.FAVORITE_TABLE_NAME, contentValues, "_id=?", new String[]{id});
+                moviesUpdated = updateInCategory(db, CategoryEntry.FAVORITE, contentValues, ID_SELECTION, new String[]{id});
+                break;
+            case FAVORITE_MOVIE_WITH_MOVIE_ID:
+            case TOP_RATED_MOVIE_WITH_MOVIE_ID:
+            case MOST_POPULAR_MOVIE_WITH_MOVIE_ID:
+                // Update a single movie by its movie id
+                moviesUpdated = updateInCategory(db, getCategory(uri), contentValues, MOVIE_ID_SELECTION, new String[]{uri.getLastPathSegment()});
                 break;
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
 
         if (moviesUpdated != 0) {
-            // Set notifications if a movie was updated
-            getContext().getContentResolver().notifyChange(uri, null);
+            // Movies are shared between categories, so unless only the rank changed every
+            // directory may be showing the updated movie
+            boolean onlyRankChanged = contentValues.size() == 1
+                    && contentValues.containsKey(MovieEntry.COLUMN_RANK);
+            notifyChange(onlyRankChanged ? uri : MoviesContract.BASE_CONTENT_URI);
         }
 
         // Return number of movies updated
         return moviesUpdated;
 	}
 
+	@Override
+	public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] values){
+
+        if (values.length == 0) {
+            return 0;
+        }
+
+        switch (sUriMatcher.match(uri)) {
+            case FAVORITE_MOVIES:
+            case TOP_RATED_MOVIES:
+            case MOST_POPULAR_MOVIES:
+                break;
+            default:
+                throw new UnsupportedOperationException("Unknown uri: " + uri);
+        }
+
+        final SQLiteDatabase db = mFavoriteMoviesDBHelper.getWritableDatabase();
+
+        int moviesInserted = insertMovies(db, getCategory(uri), values);
+
+        // A single notification for the whole batch
+        if (moviesInserted != 0) {
+            notifyChange(uri);
+        }
+
+        return moviesInserted;
+	}
+
+	@NonNull
+	@Override
+	public ContentProviderResult[] applyBatch(@NonNull ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+
+        final SQLiteDatabase db = mFavoriteMoviesDBHelper.getWritableDatabase();
+
+        // Collect the notifications of every operation and send them once committed
+        Set<Uri> changedUris = new LinkedHashSet<>();
+        mPendingNotifications.set(changedUris);
+
+        ContentProviderResult[] results;
+        db.beginTransactionNonExclusive();
+        try {
+            results = super.applyBatch(operations);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            mPendingNotifications.remove();
+        }
+
+        for (Uri changedUri : changedUris) {
+            getContext().getContentResolver().notifyChange(changedUri, null);
+        }
+
+        return results;
+	}
+
+	// Parses a numeric query parameter of the uri
+	private static long parseQueryParameter(Uri uri, String value){
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid query parameter " + value + " in uri: " + uri);
+        }
+	}
+
+	// Returns the category behind a movies directory uri, or one of its movies
+	private static String getCategory(Uri uri){
+        switch (sUriMatcher.match(uri)) {
+            case FAVORITE_MOVIES:
+            case FAVORITE_MOVIE_WITH_ID:
+            case FAVORITE_MOVIE_WITH_MOVIE_ID:
+                return CategoryEntry.FAVORITE;
+            case TOP_RATED_MOVIES:
+            case TOP_RATED_MOVIE_WITH_MOVIE_ID:
+                return CategoryEntry.TOP_RATED;
+            case MOST_POPULAR_MOVIES:
+            case MOST_POPULAR_MOVIE_WITH_MOVIE_ID:
+                return CategoryEntry.POPULAR;
+            default:
+                throw new UnsupportedOperationException("Unknown uri: " + uri);
+        }
+	}
+
+	/**
+	 * Inserts or refreshes each movie in the movies table and lists it in the category, all in a
+	 * single transaction with compiled statements reused for every row.
+	 *
+	 * Rows without a rank are appended after the last movie of the category.
+	 */
+	private int insertMovies(SQLiteDatabase db, String category, ContentValues[] values){
+
+        // Every row shares the movie columns of the first one, so one compiled statement serves them all
+        List<String> columnList = new ArrayList<>(values[0].keySet());
+        columnList.remove(MovieEntry.COLUMN_MOVIE_ID);
+        columnList.remove(MovieEntry.COLUMN_RANK);
+        String[] columns = columnList.toArray(new String[columnList.size()]);
+
+        int moviesInserted = 0;
+
+        SQLiteStatement updateStatement = null;
+        SQLiteStatement insertStatement = null;
+        SQLiteStatement categoryStatement = null;
+
+        db.beginTransactionNonExclusive();
+        try {
+            if (columns.length != 0) {
+                updateStatement = db.compileStatement(buildUpdateStatement(columns));
+            }
+            insertStatement = db.compileStatement(buildInsertStatement(columns));
+            categoryStatement = db.compileStatement("INSERT OR REPLACE INTO " +
+                    CategoryEntry.TABLE_NAME + " (" + CategoryEntry.COLUMN_CATEGORY + ", " +
+                    CategoryEntry.COLUMN_MOVIE_ID + ", " + CategoryEntry.COLUMN_RANK + ") VALUES (?, ?, ?)");
+
+            long nextRank = DatabaseUtils.longForQuery(db, "SELECT IFNULL(MAX(" +
+                    CategoryEntry.COLUMN_RANK + ") + 1, 0) FROM " + CategoryEntry.TABLE_NAME +
+                    " WHERE " + CategoryEntry.COLUMN_CATEGORY + " = ?", new String[]{category});
+
+            for (ContentValues value : values) {
+                checkColumns(columns, value);
+                long movieId = value.getAsLong(MovieEntry.COLUMN_MOVIE_ID);
+
+                // Refresh the stored movie, and only insert it when it is not stored yet
+                int moviesUpdated = 0;
+                if (updateStatement != null) {
+                    updateStatement.clearBindings();
+                    bindValues(updateStatement, columns, value, 1);
+                    updateStatement.bindLong(columns.length + 1, movieId);
+                    moviesUpdated = updateStatement.executeUpdateDelete();
+                }
+                if (moviesUpdated == 0) {
+                    insertStatement.clearBindings();
+                    insertStatement.bindLong(1, movieId);
+                    bindValues(insertStatement, columns, value, 2);
+                    insertStatement.executeInsert();
+                }
+
+                Long rank = value.getAsLong(MovieEntry.COLUMN_RANK);
+                if (rank == null) {
+                    rank = nextRank;
+                }
+                nextRank = Math.max(nextRank, rank + 1);
+
+                categoryStatement.clearBindings();
+                categoryStatement.bindString(1, category);
+                categoryStatement.bindLong(2, movieId);
+                categoryStatement.bindLong(3, rank);
+                if (categoryStatement.executeInsert() != -1) {
+                    moviesInserted++;
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            closeStatements(updateStatement, insertStatement, categoryStatement);
+        }
+
+        return moviesInserted;
+	}
+
+	private static void closeStatements(SQLiteStatement... statements){
+        for (SQLiteStatement statement : statements) {
+            if (statement != null) {
+                statement.close();
+            }
+        }
+	}
+
+	// Removes the matching movies from the category, and the movies no category lists anymore
+	private static int deleteFromCategory(SQLiteDatabase db, String category, String selection, String[] selectionArgs){
+        String whereClause = CategoryEntry.COLUMN_CATEGORY + " = ?";
+        String[] whereArgs = new String[]{category};
+        if (selection != null) {
+            whereClause += " AND " + buildInCategorySelection(selection);
+            whereArgs = DatabaseUtils.appendSelectionArgs(new String[]{category, category}, selectionArgs);
+        }
+
+        int moviesDeleted;
+        db.beginTransactionNonExclusive();
+        try {
+            moviesDeleted = db.delete(CategoryEntry.TABLE_NAME, whereClause, whereArgs);
+            if (moviesDeleted != 0) {
+                db.delete(MovieEntry.TABLE_NAME, MovieEntry.COLUMN_MOVIE_ID + " NOT IN (SELECT " +
+                        CategoryEntry.COLUMN_MOVIE_ID + " FROM " + CategoryEntry.TABLE_NAME + ")", null);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return moviesDeleted;
+	}
+
+	// Updates the matching movies of the category. The rank is written to the category table.
+	private static int updateInCategory(SQLiteDatabase db, String category, ContentValues contentValues, String selection, String[] selectionArgs){
+        ContentValues movieValues = new ContentValues(contentValues);
+        movieValues.remove(MovieEntry.COLUMN_RANK);
+
+        String whereClause = buildInCategorySelection(selection);
+        String[] whereArgs = DatabaseUtils.appendSelectionArgs(new String[]{category}, selectionArgs);
+
+        int moviesUpdated = 0;
+        db.beginTransactionNonExclusive();
+        try {
+            if (contentValues.containsKey(MovieEntry.COLUMN_RANK)) {
+                ContentValues rankValues = new ContentValues();
+                rankValues.put(CategoryEntry.COLUMN_RANK, contentValues.getAsLong(MovieEntry.COLUMN_RANK));
+                moviesUpdated = db.update(CategoryEntry.TABLE_NAME, rankValues,
+                        CategoryEntry.COLUMN_CATEGORY + " = ? AND " + whereClause,
+                        DatabaseUtils.appendSelectionArgs(new String[]{category}, whereArgs));
+            }
+            if (movieValues.size() != 0) {
+                moviesUpdated = Math.max(moviesUpdated,
+                        db.update(MovieEntry.TABLE_NAME, movieValues, whereClause, whereArgs));
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return moviesUpdated;
+	}
+
+	// "movie_id IN (...)" matching the movies of a category that also match the selection.
+	// The category is the first argument, followed by the selection arguments.
+	private static String buildInCategorySelection(String selection){
+        String inCategory = MovieEntry.COLUMN_MOVIE_ID + " IN (SELECT " + MovieEntry.COLUMN_MOVIE_ID +
+                " FROM " + CATEGORY_MOVIES_TABLES + " WHERE " + CategoryEntry.COLUMN_CATEGORY + " = ?";
+        if (selection != null) {
+            inCategory += " AND (" + selection + ")";
+        }
+        return inCategory + ")";
+	}
+
+	// Builds "INSERT INTO movies (movie_id, a, b) VALUES (?, ?, ?)" for the given columns
+	private static String buildInsertStatement(String[] columns){
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(MovieEntry.TABLE_NAME)
+                .append(" (").append(MovieEntry.COLUMN_MOVIE_ID);
+        StringBuilder args = new StringBuilder("?");
+        for (String column : columns) {
+            sql.append(", ").append(column);
+            args.append(", ?");
+        }
+        return sql.append(") VALUES (").append(args).append(')').toString();
+	}
+
+	// Builds "UPDATE movies SET a = ?, b = ? WHERE movie_id = ?" for the given columns
+	private static String buildUpdateStatement(String[] columns){
+        StringBuilder sql = new StringBuilder("UPDATE ").append(MovieEntry.TABLE_NAME).append(" SET ");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(columns[i]).append(" = ?");
+        }
+        return sql.append(" WHERE ").append(MovieEntry.COLUMN_MOVIE_ID).append(" = ?").toString();
+	}
+
+	// Checks a row has the movie id and exactly the columns the statements were compiled with
+	private static void checkColumns(String[] columns, ContentValues values){
+        if (!values.containsKey(MovieEntry.COLUMN_MOVIE_ID)) {
+            throw new IllegalArgumentException("Missing column " + MovieEntry.COLUMN_MOVIE_ID + " in insert row");
+        }
+
+        int expectedSize = columns.length + (values.containsKey(MovieEntry.COLUMN_RANK) ? 2 : 1);
+        if (values.size() != expectedSize) {
+            throw new IllegalArgumentException("All rows of a bulk insert must share the same columns");
+        }
+
+        for (String column : columns) {
+            if (!values.containsKey(column)) {
+                throw new IllegalArgumentException("Missing column " + column + " in bulk insert row");
+            }
+        }
+	}
+
+	// Binds a row to the compiled statement, in the column order it was built with
+	private static void bindValues(SQLiteStatement statement, String[] columns, ContentValues values, int firstIndex){
+        for (int i = 0; i < columns.length; i++) {
+            Object value = values.get(columns[i]);
+            int index = firstIndex + i;
+            if (value == null) {
+                statement.bindNull(index);
+            } else if (value instanceof Integer || value instanceof Long
+                    || value instanceof Short || value instanceof Byte) {
+                statement.bindLong(index, ((Number) value).longValue());
+            } else if (value instanceof Double || value instanceof Float) {
+                statement.bindDouble(index, ((Number) value).doubleValue());
+            } else if (value instanceof Boolean) {
+                statement.bindLong(index, (Boolean) value ? 1 : 0);
+            } else if (value instanceof byte[]) {
+                statement.bindBlob(index, (byte[]) value);
+            } else {
+                statement.bindString(index, value.toString());
+            }
+        }
+	}
+
+	// Notifies the resolver, or defers it while a batch is being applied on this thread
+	private void notifyChange(Uri uri){
+        Set<Uri> pendingNotifications = mPendingNotifications.get();
+        if (pendingNotifications != null) {
+            pendingNotifications.add(uri);
+        } else {
+            getContext().getContentResolver().notifyChange(uri, null);
+        }
+	}
+
 }
\ No newline at end of file
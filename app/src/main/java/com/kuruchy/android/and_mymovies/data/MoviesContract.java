@@ -24,6 +24,7 @@
 
 package com.kuruchy.android.and_mymovies.data;
 
+import android.database.Cursor;
 import android.net.Uri;
 import android.provider.BaseColumns;
 
@@ -49,6 +50,18 @@ public class MoviesContract {
         public static final String PATH_TOP_RATED_MOVIES = TheMovieDatabaseNetworkUtils.TOP_RATED;
         public static final String PATH_POPULAR_MOVIES = TheMovieDatabaseNetworkUtils.POPULAR;
 
+        // This is the path for a single movie of a directory, looked up by its movie id
+        public static final String PATH_MOVIE = "movie";
+
+        // Query parameters to read a directory one window at a time. The window holds at most
+        // "limit" movies, and starts after the movie whose sort key is given by the "after_"
+        // parameters, one for each column of the order: after_rank and after_movie_id in the
+        // rank order of the directories.
+        public static final String QUERY_PARAMETER_LIMIT = "limit";
+        public static final String QUERY_PARAMETER_AFTER_PREFIX = "after_";
+        public static final String QUERY_PARAMETER_AFTER_RANK = QUERY_PARAMETER_AFTER_PREFIX + "rank";
+        public static final String QUERY_PARAMETER_AFTER_MOVIE_ID = QUERY_PARAMETER_AFTER_PREFIX + "movie_id";
+
         public static final class MovieEntry implements BaseColumns {
 
             // Movies content URI = base content URI + path
@@ -59,12 +72,8 @@ public class MoviesContract {
             public static final Uri CONTENT_POPULAR_URI =
                     BASE_CONTENT_URI.buildUpon().appendPath(PATH_POPULAR_MOVIES).build();
 
-            // Tables and column names
-            public static final String FAVORITE_TABLE_NAME     = TheMovieDatabaseNetworkUtils.FAVORITE;
-            public static final String TOP_RATED_TABLE_NAME    = TheMovieDatabaseNetworkUtils.TOP_RATED;
-            public static final String MOST_POPULAR_TABLE_NAME = TheMovieDatabaseNetworkUtils.POPULAR;
-
-            public static final String[] TABLE_NAMES = {FAVORITE_TABLE_NAME, TOP_RATED_TABLE_NAME, MOST_POPULAR_TABLE_NAME};
+            // Table name, every movie is stored once no matter how many categories it belongs to
+            public static final String TABLE_NAME = "movies";
 
             // Since TaskEntry implements the interface "BaseColumns", it has an automatically produced
             // "_ID" column in addition to the two below
@@ -81,5 +90,71 @@ public class MoviesContract {
             public static final String COLUMN_REVIEWS                = "reviews";
             public static final String COLUMN_BACKDROP_PATH          = "backdrop_path";
             public static final String COLUMN_TRAILER_THUMBNAIL_PATH = "trailer_thumbnail";
+
+            // Position of the movie within the category being queried, joined from the CategoryEntry
+            public static final String COLUMN_RANK                   = CategoryEntry.COLUMN_RANK;
+
+            /**
+             * Builds the uri of a single movie of a directory, e.g. content://authority/favorite/movie/550
+             *
+             * @param directoryUri One of the movies content URIs
+             * @param movieId The movie id of TheMovieDatabase
+             * @return The uri to look the movie up by its id
+             */
+            public static Uri buildMovieUriWithMovieId(Uri directoryUri, int movieId) {
+                return directoryUri.buildUpon()
+                        .appendPath(PATH_MOVIE)
+                        .appendPath(String.valueOf(movieId))
+                        .build();
+            }
+
+            /**
+             * Builds the uri of the first movies of a directory, e.g. content://authority/popular?limit=60
+             *
+             * @param directoryUri One of the movies content URIs
+             * @param limit The maximum number of movies
+             * @return The uri to query the page
+             */
+            public static Uri buildPageUri(Uri directoryUri, int limit) {
+                return directoryUri.buildUpon()
+                        .appendQueryParameter(QUERY_PARAMETER_LIMIT, String.valueOf(limit))
+                        .build();
+            }
+
+            /**
+             * Builds the uri of the window of a directory following a movie, e.g.
+             * content://authority/popular?limit=60&after_rank=59&after_movie_id=550, so the
+             * database starts reading at that movie instead of skipping over the previous ones.
+             *
+             * @param directoryUri One of the movies content URIs
+             * @param limit The maximum number of movies
+             * @param sortOrder The order the directory is read in, null for its rank order
+             * @param lastMovie A cursor on the last movie of the previous window, with the columns
+             *                  of the order
+             * @return The uri to query the window
+             */
+            public static Uri buildPageUri(Uri directoryUri, int limit, String sortOrder, Cursor lastMovie) {
+                Uri.Builder builder = buildPageUri(directoryUri, limit).buildUpon();
+                MovieSortOrder.parse(sortOrder).appendAfterParameters(builder, lastMovie);
+                return builder.build();
+            }
+        }
+
+        public static final class CategoryEntry {
+
+            // Table name, one row for each movie listed in a category
+            public static final String TABLE_NAME = "category_membership";
+
+            // Categories a movie can belong to, they match the movies directory paths
+            public static final String FAVORITE  = TheMovieDatabaseNetworkUtils.FAVORITE;
+            public static final String TOP_RATED = TheMovieDatabaseNetworkUtils.TOP_RATED;
+            public static final String POPULAR   = TheMovieDatabaseNetworkUtils.POPULAR;
+
+            public static final String[] CATEGORIES = {FAVORITE, TOP_RATED, POPULAR};
+
+            // Columns within the database table
+            public static final String COLUMN_CATEGORY = "category";
+            public static final String COLUMN_MOVIE_ID = MovieEntry.COLUMN_MOVIE_ID;
+            public static final String COLUMN_RANK     = "rank";
         }
 }
\ No newline at end of file
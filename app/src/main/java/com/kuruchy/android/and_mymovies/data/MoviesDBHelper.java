@@ -29,6 +29,9 @@ import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.util.Log;
 
+import com.kuruchy.android.and_mymovies.data.MoviesContract.CategoryEntry;
+import com.kuruchy.android.and_mymovies.data.MoviesContract.MovieEntry;
+
 /*
 * MoviesDBHelper
 *
@@ -40,61 +43,218 @@ public class MoviesDBHelper extends SQLiteOpenHelper {
 
 	// Name & version of the Database
 	private static final String DATABASE_NAME = "movies.db";
-	private static final int DATABASE_VERSION = 7;
+	private static final int DATABASE_VERSION = 11;
+
+	// Up to version 8 every category had its own table, named after the category
+	private static final String[] LEGACY_TABLE_NAMES = CategoryEntry.CATEGORIES;
+
+	// Movie columns shared by the legacy tables and the movies table
+	private static final String MOVIE_COLUMNS =
+			MovieEntry.COLUMN_MOVIE_ID + ", " +
+			MovieEntry.COLUMN_MOVIE_TITLE + ", " +
+			MovieEntry.COLUMN_MOVIE_ORG_TITLE + ", " +
+			MovieEntry.COLUMN_POSTER_PATH + ", " +
+			MovieEntry.COLUMN_SYNOPSIS + ", " +
+			MovieEntry.COLUMN_USER_RATING + ", " +
+			MovieEntry.COLUMN_GLOBAL_RATING + ", " +
+			MovieEntry.COLUMN_RELEASE_DATE + ", " +
+			MovieEntry.COLUMN_TRAILER_PATH + ", " +
+			MovieEntry.COLUMN_TRAILER_THUMBNAIL_PATH + ", " +
+			MovieEntry.COLUMN_BACKDROP_PATH + ", " +
+			MovieEntry.COLUMN_REVIEWS;
+
+	// The same columns read from a version 9 or older table, with the ratings and release dates
+	// stored as text converted to numbers. Release dates become days since 1970-01-01.
+	private static final String MOVIE_COLUMNS_FROM_TEXT =
+			MovieEntry.COLUMN_MOVIE_ID + ", " +
+			MovieEntry.COLUMN_MOVIE_TITLE + ", " +
+			MovieEntry.COLUMN_MOVIE_ORG_TITLE + ", " +
+			MovieEntry.COLUMN_POSTER_PATH + ", " +
+			MovieEntry.COLUMN_SYNOPSIS + ", " +
+			"CAST(NULLIF(" + MovieEntry.COLUMN_USER_RATING + ", '') AS REAL), " +
+			"CAST(" + MovieEntry.COLUMN_GLOBAL_RATING + " AS REAL), " +
+			"CAST(julianday(" + MovieEntry.COLUMN_RELEASE_DATE + ") - 2440587.5 AS INTEGER), " +
+			MovieEntry.COLUMN_TRAILER_PATH + ", " +
+			MovieEntry.COLUMN_TRAILER_THUMBNAIL_PATH + ", " +
+			MovieEntry.COLUMN_BACKDROP_PATH + ", " +
+			MovieEntry.COLUMN_REVIEWS;
+
+	// Up to version 10 poster and backdrop paths were stored as full URLs of one image size
+	private static final String IMAGE_URL_PREFIX = "https://image.tmdb.org/t/p/";
+
+	// Page cache of the writing connection, in KiB when negative (about 2MB)
+	private static final int CACHE_SIZE_KIB = -2048;
 
 	public MoviesDBHelper(Context context) {
 		super(context, DATABASE_NAME, null, DATABASE_VERSION);
+
+		// With write-ahead logging the loaders keep reading from their own connections of the
+		// pool while the sync is writing, instead of waiting for it to commit. The size of the
+		// pool is left to the platform, there is no public API to set it.
+		setWriteAheadLoggingEnabled(true);
+	}
+
+	// Configure the primary connection, the one every write goes through. The pragmas only apply
+	// to it: the pooled connections the loaders read with are opened by the platform, with no
+	// hook to configure them, and keep the default page cache. synchronous only matters to the
+	// connection that commits, so that one is fully covered.
+	@Override
+	public void onConfigure(SQLiteDatabase sqLiteDatabase) {
+		super.onConfigure(sqLiteDatabase);
+
+		// In WAL mode NORMAL is still safe against corruption, and skips the fsync on every commit
+		sqLiteDatabase.execSQL("PRAGMA synchronous = NORMAL");
+		sqLiteDatabase.execSQL("PRAGMA cache_size = " + CACHE_SIZE_KIB);
 	}
 
 	// Create the database
 	@Override
 	public void onCreate(SQLiteDatabase sqLiteDatabase) {
-        for(String tableName : MoviesContract.MovieEntry.TABLE_NAMES){
-            final String SQL_CREATE_MOVIE_TABLE = "CREATE TABLE " +
-                    tableName +
-                    "(" +
-                    MoviesContract.MovieEntry._ID +
-                    " INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                    MoviesContract.MovieEntry.COLUMN_MOVIE_TITLE +
-                    " TEXT NOT NULL, " +
-                    MoviesContract.MovieEntry.COLUMN_MOVIE_ORG_TITLE +
-                    " TEXT NOT NULL, " +
-                    MoviesContract.MovieEntry.COLUMN_MOVIE_ID +
-                    " INTEGER NOT NULL, " +
-                    MoviesContract.MovieEntry.COLUMN_POSTER_PATH +
-                    " TEXT NOT NULL, " +
-                    MoviesContract.MovieEntry.COLUMN_SYNOPSIS +
-                    " TEXT NOT NULL, " +
-                    MoviesContract.MovieEntry.COLUMN_USER_RATING +
-                    " TEXT NOT NULL, " +
-                    MoviesContract.MovieEntry.COLUMN_GLOBAL_RATING +
-                    " TEXT NOT NULL, " +
-                    MoviesContract.MovieEntry.COLUMN_RELEASE_DATE +
-                    " TEXT NOT NULL, " +
-					MoviesContract.MovieEntry.COLUMN_TRAILER_PATH +
-					" TEXT NOT NULL, " +
-					MoviesContract.MovieEntry.COLUMN_TRAILER_THUMBNAIL_PATH +
-					" TEXT NOT NULL, " +
-					MoviesContract.MovieEntry.COLUMN_BACKDROP_PATH +
-					" TEXT NOT NULL, " +
-			        MoviesContract.MovieEntry.COLUMN_REVIEWS +
-					" TEXT NOT NULL);";
-
-            sqLiteDatabase.execSQL(SQL_CREATE_MOVIE_TABLE);
-        }
+        createMovieTable(sqLiteDatabase);
+        createCategoryTable(sqLiteDatabase);
+	}
+
+	// Create the movies table and its indexes
+	private static void createMovieTable(SQLiteDatabase sqLiteDatabase) {
+        // Trailer, thumbnail and reviews come from the detail fetch, so they are empty until then
+        final String SQL_CREATE_MOVIE_TABLE = "CREATE TABLE " +
+                MovieEntry.TABLE_NAME +
+                "(" +
+                MovieEntry._ID +
+                " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                MovieEntry.COLUMN_MOVIE_ID +
+                " INTEGER NOT NULL UNIQUE, " +
+                MovieEntry.COLUMN_MOVIE_TITLE +
+                " TEXT NOT NULL, " +
+                MovieEntry.COLUMN_MOVIE_ORG_TITLE +
+                " TEXT NOT NULL, " +
+                MovieEntry.COLUMN_POSTER_PATH +
+                " TEXT NOT NULL, " +
+                MovieEntry.COLUMN_SYNOPSIS +
+                " TEXT NOT NULL, " +
+                MovieEntry.COLUMN_USER_RATING +
+                " REAL, " +
+                MovieEntry.COLUMN_GLOBAL_RATING +
+                " REAL NOT NULL DEFAULT 0, " +
+                MovieEntry.COLUMN_RELEASE_DATE +
+                " INTEGER, " +
+                MovieEntry.COLUMN_TRAILER_PATH +
+                " TEXT NOT NULL DEFAULT '', " +
+                MovieEntry.COLUMN_TRAILER_THUMBNAIL_PATH +
+                " TEXT NOT NULL DEFAULT '', " +
+                MovieEntry.COLUMN_BACKDROP_PATH +
+                " TEXT NOT NULL, " +
+                MovieEntry.COLUMN_REVIEWS +
+                " TEXT NOT NULL DEFAULT '');";
+
+        sqLiteDatabase.execSQL(SQL_CREATE_MOVIE_TABLE);
+
+        // Sorting by rating or release date walks these indexes, probing the category by movie id
+        sqLiteDatabase.execSQL("CREATE INDEX " + MovieEntry.TABLE_NAME + "_global_rating_index ON " +
+                MovieEntry.TABLE_NAME + "(" + MovieEntry.COLUMN_GLOBAL_RATING + ", " + MovieEntry.COLUMN_MOVIE_ID + ");");
+        sqLiteDatabase.execSQL("CREATE INDEX " + MovieEntry.TABLE_NAME + "_release_date_index ON " +
+                MovieEntry.TABLE_NAME + "(" + MovieEntry.COLUMN_RELEASE_DATE + ", " + MovieEntry.COLUMN_MOVIE_ID + ");");
+	}
+
+	// Create the category_membership table and its indexes
+	private static void createCategoryTable(SQLiteDatabase sqLiteDatabase) {
+        // A movie is listed at most once per category, at the given rank
+        final String SQL_CREATE_CATEGORY_TABLE = "CREATE TABLE " +
+                CategoryEntry.TABLE_NAME +
+                "(" +
+                CategoryEntry.COLUMN_CATEGORY +
+                " TEXT NOT NULL, " +
+                CategoryEntry.COLUMN_MOVIE_ID +
+                " INTEGER NOT NULL, " +
+                CategoryEntry.COLUMN_RANK +
+                " INTEGER NOT NULL, " +
+                "PRIMARY KEY (" + CategoryEntry.COLUMN_CATEGORY + ", " + CategoryEntry.COLUMN_MOVIE_ID + "));";
+
+        sqLiteDatabase.execSQL(SQL_CREATE_CATEGORY_TABLE);
+
+        // Categories are read in rank order, and movies are pruned once no category lists them
+        sqLiteDatabase.execSQL("CREATE INDEX " + CategoryEntry.TABLE_NAME + "_rank_index ON " +
+                CategoryEntry.TABLE_NAME + "(" + CategoryEntry.COLUMN_CATEGORY + ", " + CategoryEntry.COLUMN_RANK + ");");
+        sqLiteDatabase.execSQL("CREATE INDEX " + CategoryEntry.TABLE_NAME + "_movie_id_index ON " +
+                CategoryEntry.TABLE_NAME + "(" + CategoryEntry.COLUMN_MOVIE_ID + ");");
 	}
 
 	// Upgrade database when version is changed.
 	@Override
 	public void onUpgrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
+		if (oldVersion >= 7) {
+			upgradeFromVersion7(sqLiteDatabase, oldVersion);
+			return;
+		}
+
 		Log.w(LOG_TAG, "Upgrading database from version " + oldVersion + " to " +
 				newVersion + ". OLD DATA WILL BE DESTROYED");
-		// Drop the table
-        for(String tableName: MoviesContract.MovieEntry.TABLE_NAMES){
-            sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + tableName);
-            sqLiteDatabase.execSQL("DELETE FROM SQLITE_SEQUENCE WHERE NAME = '" + tableName + "'");
+		// Drop the tables
+        for(String tableName: LEGACY_TABLE_NAMES){
+            dropTable(sqLiteDatabase, tableName);
         }
+        dropTable(sqLiteDatabase, MovieEntry.TABLE_NAME);
+        dropTable(sqLiteDatabase, CategoryEntry.TABLE_NAME);
 		// Re-create database
 		onCreate(sqLiteDatabase);
 	}
+
+	// Upgrade a version 7 database or newer keeping its data
+	private void upgradeFromVersion7(SQLiteDatabase sqLiteDatabase, int oldVersion) {
+		if (oldVersion < 8) {
+			// Keep the first copy of every movie before making the movie id unique
+			for (String tableName : LEGACY_TABLE_NAMES) {
+				sqLiteDatabase.execSQL("DELETE FROM " + tableName +
+						" WHERE " + MovieEntry._ID + " NOT IN (SELECT MIN(" +
+						MovieEntry._ID + ") FROM " + tableName +
+						" GROUP BY " + MovieEntry.COLUMN_MOVIE_ID + ")");
+			}
+		}
+		if (oldVersion < 9) {
+			// Move the per category tables into the movies and category_membership tables
+			onCreate(sqLiteDatabase);
+			// Favorites go first, they are the ones holding the trailers and reviews
+			for (String tableName : LEGACY_TABLE_NAMES) {
+				sqLiteDatabase.execSQL("INSERT OR IGNORE INTO " + MovieEntry.TABLE_NAME +
+						" (" + MOVIE_COLUMNS + ") SELECT " + MOVIE_COLUMNS_FROM_TEXT + " FROM " + tableName +
+						" ORDER BY " + MovieEntry._ID);
+				// The old row order is kept as the rank
+				sqLiteDatabase.execSQL("INSERT OR IGNORE INTO " + CategoryEntry.TABLE_NAME +
+						" (" + CategoryEntry.COLUMN_CATEGORY + ", " + CategoryEntry.COLUMN_MOVIE_ID + ", " +
+						CategoryEntry.COLUMN_RANK + ") SELECT '" + tableName + "', " +
+						MovieEntry.COLUMN_MOVIE_ID + ", " + MovieEntry._ID + " FROM " + tableName);
+				dropTable(sqLiteDatabase, tableName);
+			}
+		} else if (oldVersion < 10) {
+			// Columns can't change their type, so the movies table is rebuilt keeping its ids
+			final String oldTableName = MovieEntry.TABLE_NAME + "_v9";
+			sqLiteDatabase.execSQL("ALTER TABLE " + MovieEntry.TABLE_NAME + " RENAME TO " + oldTableName);
+			createMovieTable(sqLiteDatabase);
+			sqLiteDatabase.execSQL("INSERT INTO " + MovieEntry.TABLE_NAME +
+					" (" + MovieEntry._ID + ", " + MOVIE_COLUMNS + ") SELECT " +
+					MovieEntry._ID + ", " + MOVIE_COLUMNS_FROM_TEXT + " FROM " + oldTableName);
+			dropTable(sqLiteDatabase, oldTableName);
+		}
+		if (oldVersion < 11) {
+			// Keep only the TMDB paths, the image size is chosen when the image is loaded
+			sqLiteDatabase.execSQL("UPDATE " + MovieEntry.TABLE_NAME + " SET " +
+					MovieEntry.COLUMN_POSTER_PATH + " = " + stripImageUrl(MovieEntry.COLUMN_POSTER_PATH) + ", " +
+					MovieEntry.COLUMN_BACKDROP_PATH + " = " + stripImageUrl(MovieEntry.COLUMN_BACKDROP_PATH));
+		}
+	}
+
+	// SQL expression of the path of an image URL column, after its size, or empty if there is none
+	private static String stripImageUrl(String column) {
+		final String sizeAndPath = "substr(" + column + ", " + (IMAGE_URL_PREFIX.length() + 1) + ")";
+		return "CASE WHEN " + column + " LIKE '" + IMAGE_URL_PREFIX + "%' AND instr(" + sizeAndPath + ", '/') > 0" +
+				" THEN substr(" + sizeAndPath + ", instr(" + sizeAndPath + ", '/'))" +
+				" WHEN " + column + " LIKE '" + IMAGE_URL_PREFIX + "%' THEN ''" +
+				" ELSE " + column + " END";
+	}
+
+	// Drop a table and reset its AUTOINCREMENT sequence
+	private static void dropTable(SQLiteDatabase sqLiteDatabase, String tableName) {
+		sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + tableName);
+		sqLiteDatabase.execSQL("DELETE FROM SQLITE_SEQUENCE WHERE NAME = '" + tableName + "'");
+	}
 }
\ No newline at end of file
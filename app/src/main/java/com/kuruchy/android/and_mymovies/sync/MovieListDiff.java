@@ -0,0 +1,230 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017.  Bruno Retolaza
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kuruchy.android.and_mymovies.sync;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+
+import com.kuruchy.android.and_mymovies.data.MoviesContract;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Movie List Diff
+ *
+ * Compares a freshly fetched page of a movie list against the rows already stored for its uri,
+ * keyed by movie id, and builds the minimal set of insert, update and delete operations between them.
+ */
+public final class MovieListDiff {
+
+    // Columns that come from the movie lists, plus the position in the list. The trailer and
+    // review columns are filled by the detail fetch, so they are never compared or overwritten here.
+    private static final String[] LIST_COLUMNS = {
+            MoviesContract.MovieEntry.COLUMN_RANK,
+            MoviesContract.MovieEntry.COLUMN_MOVIE_TITLE,
+            MoviesContract.MovieEntry.COLUMN_MOVIE_ORG_TITLE,
+            MoviesContract.MovieEntry.COLUMN_POSTER_PATH,
+            MoviesContract.MovieEntry.COLUMN_SYNOPSIS,
+            MoviesContract.MovieEntry.COLUMN_GLOBAL_RATING,
+            MoviesContract.MovieEntry.COLUMN_RELEASE_DATE,
+            MoviesContract.MovieEntry.COLUMN_BACKDROP_PATH
+    };
+
+    private static final String MOVIE_ID_SELECTION = MoviesContract.MovieEntry.COLUMN_MOVIE_ID + "=?";
+
+    private MovieListDiff() {
+    }
+
+    /**
+     * Builds the operations that turn the stored rows of a page into the fetched ones. Movies
+     * stored in other pages are moved into this one when fetched, but never deleted.
+     *
+     * @param contentResolver Used to read the rows currently stored
+     * @param uri The movies directory being synced
+     * @param fetchedValues The rows of the fetched page, each one with its movie id and rank
+     * @param firstRank The first rank of the page
+     * @param endRank The rank following the last one of the page
+     * @return The insert, update and delete operations, empty if nothing changed
+     */
+    public static ArrayList<ContentProviderOperation> buildOperations(ContentResolver contentResolver,
+                                                                      Uri uri,
+                                                                      ContentValues[] fetchedValues,
+                                                                      long firstRank,
+                                                                      long endRank) {
+
+        // Movies fetched, skipping the ones repeated in the same list
+        List<ContentValues> fetchedMovies = new ArrayList<>(fetchedValues.length);
+        Set<Integer> fetchedIds = new HashSet<>();
+        for (ContentValues fetched : fetchedValues) {
+            Integer movieId = fetched.getAsInteger(MoviesContract.MovieEntry.COLUMN_MOVIE_ID);
+            if (movieId != null && fetchedIds.add(movieId)) {
+                fetchedMovies.add(fetched);
+            }
+        }
+
+        Map<Integer, ContentValues> storedMovies =
+                queryStoredMovies(contentResolver, uri, fetchedIds, firstRank, endRank);
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+
+        for (ContentValues fetched : fetchedMovies) {
+            Integer movieId = fetched.getAsInteger(MoviesContract.MovieEntry.COLUMN_MOVIE_ID);
+
+            ContentValues stored = storedMovies.get(movieId);
+            if (stored == null) {
+                operations.add(ContentProviderOperation.newInsert(uri)
+                        .withValues(fetched)
+                        .build());
+                continue;
+            }
+
+            List<String> changedColumns = changedColumns(stored, fetched);
+            if (!changedColumns.isEmpty()) {
+                // The fetched values keep their types, so numbers are written as numbers
+                ContentProviderOperation.Builder update = ContentProviderOperation.newUpdate(uri)
+                        .withSelection(MOVIE_ID_SELECTION, new String[]{String.valueOf(movieId)});
+                for (String column : changedColumns) {
+                    update.withValue(column, fetched.get(column));
+                }
+                operations.add(update.build());
+            }
+        }
+
+        // Whatever is stored in the page but was not fetched dropped out of it
+        for (Map.Entry<Integer, ContentValues> stored : storedMovies.entrySet()) {
+            Integer movieId = stored.getKey();
+            Long rank = stored.getValue().getAsLong(MoviesContract.MovieEntry.COLUMN_RANK);
+            if (!fetchedIds.contains(movieId) && rank != null && rank >= firstRank && rank < endRank) {
+                operations.add(ContentProviderOperation.newDelete(uri)
+                        .withSelection(MOVIE_ID_SELECTION, new String[]{String.valueOf(movieId)})
+                        .build());
+            }
+        }
+
+        return operations;
+    }
+
+    // Reads the list columns of the movies stored in the ranks of the page, and of the fetched
+    // movies stored in other pages, keyed by movie id. The rest of the list is left unread.
+    private static Map<Integer, ContentValues> queryStoredMovies(ContentResolver contentResolver, Uri uri,
+                                                                 Set<Integer> fetchedIds,
+                                                                 long firstRank, long endRank) {
+        String[] projection = new String[LIST_COLUMNS.length + 1];
+        projection[0] = MoviesContract.MovieEntry.COLUMN_MOVIE_ID;
+        System.arraycopy(LIST_COLUMNS, 0, projection, 1, LIST_COLUMNS.length);
+
+        StringBuilder selection = new StringBuilder()
+                .append(MoviesContract.MovieEntry.COLUMN_RANK).append(" >= ? AND ")
+                .append(MoviesContract.MovieEntry.COLUMN_RANK).append(" < ?");
+        String[] selectionArgs = new String[2 + fetchedIds.size()];
+        selectionArgs[0] = String.valueOf(firstRank);
+        selectionArgs[1] = String.valueOf(endRank);
+        if (!fetchedIds.isEmpty()) {
+            selection.append(" OR ").append(MoviesContract.MovieEntry.COLUMN_MOVIE_ID).append(" IN (");
+            int i = 2;
+            for (Integer movieId : fetchedIds) {
+                selection.append(i == 2 ? "?" : ", ?");
+                selectionArgs[i++] = String.valueOf(movieId);
+            }
+            selection.append(")");
+        }
+
+        Map<Integer, ContentValues> storedMovies = new HashMap<>();
+
+        Cursor cursor = contentResolver.query(uri, projection, selection.toString(), selectionArgs, null);
+        if (cursor == null) {
+            return storedMovies;
+        }
+
+        try {
+            while (cursor.moveToNext()) {
+                ContentValues stored = new ContentValues();
+                for (int i = 0; i < LIST_COLUMNS.length; i++) {
+                    putStoredValue(stored, LIST_COLUMNS[i], cursor, i + 1);
+                }
+                storedMovies.put(cursor.getInt(0), stored);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        return storedMovies;
+    }
+
+    // Reads a column with the type it is stored with
+    private static void putStoredValue(ContentValues stored, String column, Cursor cursor, int index) {
+        switch (cursor.getType(index)) {
+            case Cursor.FIELD_TYPE_NULL:
+                stored.putNull(column);
+                break;
+            case Cursor.FIELD_TYPE_INTEGER:
+                stored.put(column, cursor.getLong(index));
+                break;
+            case Cursor.FIELD_TYPE_FLOAT:
+                stored.put(column, cursor.getDouble(index));
+                break;
+            default:
+                stored.put(column, cursor.getString(index));
+                break;
+        }
+    }
+
+    // Returns the list columns whose fetched value differs from the stored one
+    private static List<String> changedColumns(ContentValues stored, ContentValues fetched) {
+        List<String> changed = new ArrayList<>();
+        for (String column : LIST_COLUMNS) {
+            if (fetched.containsKey(column) && !isSameValue(fetched.get(column), stored.get(column))) {
+                changed.add(column);
+            }
+        }
+        return changed;
+    }
+
+    // Compares numbers by their value, whatever the type they were read or parsed as
+    private static boolean isSameValue(Object fetched, Object stored) {
+        if (fetched == null || stored == null) {
+            return fetched == stored;
+        }
+        if (fetched instanceof Number && stored instanceof Number) {
+            if (isFloatingPoint(fetched) || isFloatingPoint(stored)) {
+                return ((Number) fetched).doubleValue() == ((Number) stored).doubleValue();
+            }
+            return ((Number) fetched).longValue() == ((Number) stored).longValue();
+        }
+        return fetched.equals(stored);
+    }
+
+    private static boolean isFloatingPoint(Object number) {
+        return number instanceof Double || number instanceof Float;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017.  Bruno Retolaza
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kuruchy.android.and_mymovies.sync;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+
+import com.kuruchy.android.and_mymovies.utilities.TheMovieDatabaseRequestScheduler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Movies Page Prefetcher
+ *
+ * Keeps the pages following the visible position of a list downloading at the same time on a
+ * small pool of threads, so they are stored before the grid scrolls to them.
+ */
+public final class MoviesPagePrefetcher {
+
+    // Pages downloaded at the same time
+    private static final int PREFETCH_THREADS = 3;
+
+    private static final ExecutorService sExecutor = Executors.newFixedThreadPool(PREFETCH_THREADS);
+
+    // Pages queued or downloading, by list
+    private static final Map<String, List<Prefetch>> sPrefetches = new HashMap<>();
+
+    // A page being prefetched
+    private static final class Prefetch {
+        final int page;
+        final Future<?> future;
+
+        Prefetch(int page, Future<?> future) {
+            this.page = page;
+            this.future = future;
+        }
+    }
+
+    private MoviesPagePrefetcher() {
+    }
+
+    /**
+     * Prefetches the given pages of a list, skipping the ones already requested.
+     *
+     * @param context The Context used to access the ContentResolver.
+     * @param category The list to prefetch.
+     * @param firstPage The first page to prefetch, starting at 1.
+     * @param pageCount How many pages to prefetch from the first one.
+     */
+    public static void prefetchPages(@NonNull Context context, final String category, int firstPage, int pageCount) {
+        final Context appContext = context.getApplicationContext();
+
+        synchronized (sPrefetches) {
+            List<Prefetch> prefetches = sPrefetches.get(category);
+            if (prefetches == null) {
+                prefetches = new ArrayList<>();
+                sPrefetches.put(category, prefetches);
+            }
+
+            // Forget the prefetches already done
+            for (Iterator<Prefetch> iterator = prefetches.iterator(); iterator.hasNext(); ) {
+                if (iterator.next().future.isDone()) {
+                    iterator.remove();
+                }
+            }
+
+            for (int page = firstPage; page < firstPage + pageCount; page++) {
+                if (!MoviesSyncUtils.markPageRequested(category, page)) {
+                    continue;
+                }
+
+                final int pageToFetch = page;
+                prefetches.add(new Prefetch(page, sExecutor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        boolean synced = MoviesSyncTask.syncMovieData(appContext, category, pageToFetch,
+                                TheMovieDatabaseRequestScheduler.Priority.NEXT_PAGE);
+                        MoviesSyncUtils.onPageSyncFinished(category, pageToFetch, synced);
+                    }
+                })));
+            }
+        }
+    }
+
+    /**
+     * Cancels the prefetches of every list but the given one, e.g. when the user switches lists.
+     * Queued pages are dropped, and pages downloading are not stored.
+     *
+     * @param keptCategory The list whose prefetches go on, or null to cancel them all.
+     */
+    public static void cancelPrefetches(String keptCategory) {
+        synchronized (sPrefetches) {
+            for (Map.Entry<String, List<Prefetch>> entry : sPrefetches.entrySet()) {
+                if (entry.getKey().equals(keptCategory)) {
+                    continue;
+                }
+                for (Prefetch prefetch : entry.getValue()) {
+                    // Let the page be requested again when the user comes back to the list
+                    if (prefetch.future.cancel(true)) {
+                        MoviesSyncUtils.onPageSyncFinished(entry.getKey(), prefetch.page, false);
+                    }
+                }
+                entry.getValue().clear();
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,103 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017.  Bruno Retolaza
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kuruchy.android.and_mymovies.sync;
+
+import android.app.job.JobParameters;
+import android.app.job.JobService;
+import android.os.AsyncTask;
+
+import com.kuruchy.android.and_mymovies.utilities.TheMovieDatabaseNetworkUtils;
+import com.kuruchy.android.and_mymovies.utilities.TheMovieDatabaseRequestScheduler;
+
+/**
+ * Movies Sync Job Service
+ *
+ * Refreshes the first page of the movie lists in the background, when the scheduler runs it on
+ * an unmetered network while charging. Lists synced within their time to live are skipped.
+ */
+public class MoviesSyncJobService extends JobService {
+
+    // Lists refreshed in the background, favorites only live in the database
+    static final String[] SYNCED_CATEGORIES = {
+            TheMovieDatabaseNetworkUtils.TOP_RATED,
+            TheMovieDatabaseNetworkUtils.POPULAR
+    };
+
+    private AsyncTask<Void, Void, Boolean> mFetchMoviesTask;
+
+    /**
+     * The entry point to the Job. Syncs the stale lists on a background thread.
+     *
+     * @param jobParameters Parameters of the job.
+     * @return Whether there is more work remaining.
+     */
+    @Override
+    public boolean onStartJob(final JobParameters jobParameters) {
+
+        mFetchMoviesTask = new AsyncTask<Void, Void, Boolean>() {
+            @Override
+            protected Boolean doInBackground(Void... voids) {
+                boolean allSynced = true;
+                for (String category : SYNCED_CATEGORIES) {
+                    if (isCancelled()) {
+                        break;
+                    }
+                    if (!MoviesSyncUtils.isStale(getApplicationContext(), category)
+                            || !MoviesSyncUtils.markPageRequested(category, 1)) {
+                        continue;
+                    }
+
+                    boolean synced = MoviesSyncTask.syncMovieData(getApplicationContext(), category, 1,
+                            TheMovieDatabaseRequestScheduler.Priority.BACKGROUND);
+                    MoviesSyncUtils.onPageSyncFinished(category, 1, synced);
+                    allSynced &= synced;
+                }
+                return allSynced;
+            }
+
+            @Override
+            protected void onPostExecute(Boolean allSynced) {
+                // Try the failed lists again later
+                jobFinished(jobParameters, !allSynced);
+            }
+        };
+
+        mFetchMoviesTask.execute();
+        return true;
+    }
+
+    /**
+     * Called when the constraints of the job are not met anymore, e.g. the device was unplugged.
+     *
+     * @return Whether the job should be retried.
+     */
+    @Override
+    public boolean onStopJob(JobParameters jobParameters) {
+        if (mFetchMoviesTask != null) {
+            mFetchMoviesTask.cancel(true);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017.  Bruno Retolaza
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kuruchy.android.and_mymovies.sync;
+
+import android.app.Service;
+import android.content.Intent;
+import android.os.IBinder;
+import android.util.Log;
+
+import com.kuruchy.android.and_mymovies.utilities.TheMovieDatabaseRequestScheduler;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Movies Sync Service
+ *
+ * Syncs the pages of the movie lists it is started with. Each start names its list and page
+ * explicitly; pages run at the same time on a small pool of threads, and the service stops once
+ * no page is left.
+ *
+ * A page requested again replaces the one still running, and ACTION_CANCEL_OTHER_CATEGORIES
+ * cancels the pages of every list but the given one, e.g. when the user switches lists.
+ */
+public class MoviesSyncService extends Service {
+
+    private static final String TAG = MoviesSyncService.class.getSimpleName();
+
+    // Extras with the list and page to sync
+    public static final String EXTRA_CATEGORY = "category";
+    public static final String EXTRA_PAGE = "page";
+
+    // Cancels the pages of the lists other than EXTRA_CATEGORY
+    public static final String ACTION_CANCEL_OTHER_CATEGORIES =
+            "com.kuruchy.android.and_mymovies.sync.action.CANCEL_OTHER_CATEGORIES";
+
+    // Pages synced at the same time
+    private static final int SYNC_THREADS = 3;
+
+    private ExecutorService mExecutor;
+
+    // Pages queued or syncing, by "category/page"
+    private final Map<String, Job> mJobs = new HashMap<>();
+
+    // Id of the last start, so the service only stops once it is done with it
+    private int mLastStartId;
+
+    // A page being synced
+    private final class Job implements Runnable {
+        final String category;
+        final int page;
+        final String key;
+        Future<?> future;
+
+        Job(String category, int page, String key) {
+            this.category = category;
+            this.page = page;
+            this.key = key;
+        }
+
+        @Override
+        public void run() {
+            boolean synced = false;
+            try {
+                synced = MoviesSyncTask.syncMovieData(MoviesSyncService.this, category, page,
+                        TheMovieDatabaseRequestScheduler.Priority.BACKGROUND);
+            } finally {
+                onJobFinished(this, synced);
+            }
+        }
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        mExecutor = Executors.newFixedThreadPool(SYNC_THREADS);
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        synchronized (mJobs) {
+            mLastStartId = startId;
+
+            String category = intent == null ? null : intent.getStringExtra(EXTRA_CATEGORY);
+            if (category == null) {
+                Log.w(TAG, "Sync started without a list");
+            } else if (ACTION_CANCEL_OTHER_CATEGORIES.equals(intent.getAction())) {
+                cancelOtherCategories(category);
+            } else {
+                startJob(category, intent.getIntExtra(EXTRA_PAGE, 1));
+            }
+
+            stopIfIdle();
+        }
+        return START_NOT_STICKY;
+    }
+
+    // Queues the sync of a page, replacing the one of the same page
+    private void startJob(String category, int page) {
+        Job job = new Job(category, page, category + "/" + page);
+
+        Job superseded = mJobs.remove(job.key);
+        if (superseded != null) {
+            superseded.future.cancel(true);
+        }
+
+        mJobs.put(job.key, job);
+        job.future = mExecutor.submit(job);
+    }
+
+    // Cancels the pages of every list but the given one
+    private void cancelOtherCategories(String keptCategory) {
+        for (Iterator<Job> iterator = mJobs.values().iterator(); iterator.hasNext(); ) {
+            Job job = iterator.next();
+            if (job.category.equals(keptCategory)) {
+                continue;
+            }
+            iterator.remove();
+            // Let the page be requested again when the user comes back to the list
+            if (job.future.cancel(true)) {
+                MoviesSyncUtils.onPageSyncFinished(job.category, job.page, false);
+            }
+        }
+    }
+
+    private void onJobFinished(Job job, boolean synced) {
+        synchronized (mJobs) {
+            // A replaced page leaves its key to the page replacing it
+            if (mJobs.get(job.key) == job) {
+                mJobs.remove(job.key);
+                MoviesSyncUtils.onPageSyncFinished(job.category, job.page, synced);
+            }
+            stopIfIdle();
+        }
+    }
+
+    private void stopIfIdle() {
+        if (mJobs.isEmpty()) {
+            stopSelf(mLastStartId);
+        }
+    }
+
+    @Override
+    public void onDestroy() {
+        mExecutor.shutdownNow();
+        super.onDestroy();
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+}
@@ -23,104 +23,226 @@
  */
 package com.kuruchy.android.and_mymovies.sync;
 
+import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
+import android.database.Cursor;
 import android.net.Uri;
 
-import com.kuruchy.android.and_mymovies.Movie;
 import com.kuruchy.android.and_mymovies.data.MoviesContract;
 import com.kuruchy.android.and_mymovies.utilities.TheMovieDatabaseJsonUtils;
 import com.kuruchy.android.and_mymovies.utilities.TheMovieDatabaseNetworkUtils;
+import com.kuruchy.android.and_mymovies.utilities.TheMovieDatabaseRequestScheduler;
 
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 public class MoviesSyncTask {
 
+    // Columns of a parsed movie row, with its rank
+    private static final int MOVIE_ROW_COLUMNS = 9;
+
+    // Locks serializing the writes of each list, by movies directory
+    private static final Map<Uri, Object> sWriteLocks = new HashMap<>();
+
     /**
-     * Performs the network request for updated movies, parses the JSON from that request, and
-     * inserts the new movie information into the ContentProvider.
+     * Performs the network request for a page of updated movies, parses the JSON from that
+     * request, and merges the new movie information into the ContentProvider. The movies are
+     * ranked by their position in the whole list, so each page is appended after the previous one.
+     *
+     * Several pages can be downloaded and parsed at the same time, only writing them is serialized.
      *
      * @param context Used to access utility methods and the ContentResolver
      * @param sortingParam Sorting parameter
+     * @param page The page of the list, starting at 1
+     * @param priority Priority of the request against the other requests to the server
+     * @return Whether the page was synced, false if the server could not confirm it
      */
-    synchronized public static void syncMovieData(Context context, String sortingParam) {
+    public static boolean syncMovieData(Context context, String sortingParam, int page,
+                                        TheMovieDatabaseRequestScheduler.Priority priority) {
+
+        Uri mUri;
+
+        switch (sortingParam){
+            case TheMovieDatabaseNetworkUtils.FAVORITE:
+                mUri = MoviesContract.MovieEntry.CONTENT_FAVORITE_URI;
+                break;
+            case TheMovieDatabaseNetworkUtils.POPULAR:
+                mUri = MoviesContract.MovieEntry.CONTENT_POPULAR_URI;
+                break;
+            case TheMovieDatabaseNetworkUtils.TOP_RATED:
+                mUri = MoviesContract.MovieEntry.CONTENT_TOP_RATED_URI;
+                break;
+            default:
+                mUri = null;
+                break;
+        }
+
+        // Favorites only live in the local database, there is nothing to sync from the server
+        if (mUri == null || sortingParam.equals(TheMovieDatabaseNetworkUtils.FAVORITE)) {
+            return true;
+        }
 
         try {
 
-            URL movieRequestURL = TheMovieDatabaseNetworkUtils.buildMovieUrl(sortingParam);
-
-            Uri mUri;
-
-            switch (sortingParam){
-                case TheMovieDatabaseNetworkUtils.FAVORITE:
-                    mUri = MoviesContract.MovieEntry.CONTENT_FAVORITE_URI;
-                    break;
-                case TheMovieDatabaseNetworkUtils.POPULAR:
-                    mUri = MoviesContract.MovieEntry.CONTENT_POPULAR_URI;
-                    break;
-                case TheMovieDatabaseNetworkUtils.TOP_RATED:
-                    mUri = MoviesContract.MovieEntry.CONTENT_TOP_RATED_URI;
-                    break;
-                default:
-                    mUri = null;
-                    break;
+            URL movieRequestURL = TheMovieDatabaseNetworkUtils.buildMovieUrl(sortingParam, page);
+
+            TheMovieDatabaseNetworkUtils.Response movieResponse = TheMovieDatabaseNetworkUtils
+                    .getCachedResponseFromHttpUrl(movieRequestURL, priority);
+
+            ContentValues[] moviesValues = parseMoviePage(context, mUri, movieResponse, page);
+
+            // The page is not wanted anymore, e.g. the user switched to another list
+            if (Thread.currentThread().isInterrupted()) {
+                return false;
             }
 
-            String jsonMovieResponse = TheMovieDatabaseNetworkUtils
-                    .getResponseFromHttpUrl(movieRequestURL);
+            writeMoviePage(context, mUri, moviesValues, page);
 
-            Movie[] movieDataArray = TheMovieDatabaseJsonUtils
-                    .getMovieArrayFromJSONData(jsonMovieResponse);
+            // The server is failing and the cached page was served instead, it is still worth
+            // showing but the list is no fresher than before
+            if (!movieResponse.confirmed) {
+                return false;
+            }
 
-            ContentValues[] moviesValues = new ContentValues[movieDataArray.length];
+            // The list is fresh as long as its first page is
+            if (page == 1) {
+                MoviesSyncUtils.markSynced(context, sortingParam);
+            }
 
-            int i =0;
-            for (Movie mMovie : movieDataArray){
+            return true;
 
-                ContentValues contentValues = new ContentValues();
+        } catch (Exception e) {
+            // Server probably invalid
+            e.printStackTrace();
+            return false;
+        }
+    }
 
-                // Put the movie id and synopsis into the ContentValues
-                contentValues.put(MoviesContract.MovieEntry.COLUMN_MOVIE_TITLE, mMovie.getTitle().toString());
-                contentValues.put(MoviesContract.MovieEntry.COLUMN_MOVIE_ORG_TITLE, mMovie.getOriginal_title().toString());
-                contentValues.put(MoviesContract.MovieEntry.COLUMN_MOVIE_ID, mMovie.getId());
-                contentValues.put(MoviesContract.MovieEntry.COLUMN_POSTER_PATH, mMovie.getPoster_path().toString());
-                //contentValues.put(MoviesContract.MovieEntry.COLUMN_POSTER_PIC, mMovie.get());
-                contentValues.put(MoviesContract.MovieEntry.COLUMN_SYNOPSIS, mMovie.getOverview().toString());
-                contentValues.put(MoviesContract.MovieEntry.COLUMN_USER_RATING, 5.0);
-                contentValues.put(MoviesContract.MovieEntry.COLUMN_GLOBAL_RATING, mMovie.getVote_average());
-                contentValues.put(MoviesContract.MovieEntry.COLUMN_RELEASE_DATE, mMovie.getRelease_date().toString());
-                contentValues.put(MoviesContract.MovieEntry.COLUMN_TRAILER_PATH, "www.youtube.com");
-                contentValues.put(MoviesContract.MovieEntry.COLUMN_TRAILER_THUMBNAIL_PATH, "www.youtube.com");
-                contentValues.put(MoviesContract.MovieEntry.COLUMN_BACKDROP_PATH, mMovie.getBackdrop_path().toString());
-                contentValues.put(MoviesContract.MovieEntry.COLUMN_REVIEWS, "Not reviewed yet.");
+    /**
+     * Parses the response of a page of a list into the rows to store, ranked by their position
+     * in the whole list.
+     *
+     * @param context Used to access the ContentResolver
+     * @param uri The movies directory of the list
+     * @param movieResponse The response of the server for the page
+     * @param page The page of the list, starting at 1
+     * @return The rows of the page, or null if the stored page is up to date
+     * @throws Exception If the page could not be parsed
+     */
+    private static ContentValues[] parseMoviePage(Context context, Uri uri,
+                                                  TheMovieDatabaseNetworkUtils.Response movieResponse, int page)
+            throws Exception {
+
+        // The server sent the same page as last time, skip parsing and writing it as long as
+        // it is still stored
+        if (!movieResponse.changed && isPageStored(context, uri, page)) {
+            return null;
+        }
 
-                moviesValues[i] = contentValues;
-                i++;
+        // Ranks taken by this page within the whole list
+        final long firstRank = getFirstRank(page);
+
+        // Parse token by token straight into the rows of the page. Trailers and reviews are
+        // left out, they come from the detail fetch and are shared with the favorites.
+        final List<ContentValues> moviesValues = new ArrayList<>(TheMovieDatabaseNetworkUtils.MOVIES_PER_PAGE);
+        TheMovieDatabaseJsonUtils.parseMovieRows(movieResponse.getBodyStream(),
+                new TheMovieDatabaseJsonUtils.MovieRowSink() {
+                    @Override
+                    public ContentValues newRow() {
+                        return new ContentValues(MOVIE_ROW_COLUMNS);
+                    }
+
+                    @Override
+                    public void onRowParsed(ContentValues row) {
+                        row.put(MoviesContract.MovieEntry.COLUMN_RANK, firstRank + moviesValues.size());
+                        moviesValues.add(row);
+                    }
+                });
+
+        return moviesValues.toArray(new ContentValues[moviesValues.size()]);
+    }
+
+    /**
+     * Merges the rows of a page into the ContentProvider. Pages of a list are written one at a
+     * time, since each one is diffed against what the previous ones stored; different lists are
+     * written at the same time.
+     *
+     * @param context Used to access the ContentResolver
+     * @param uri The movies directory of the list
+     * @param moviesValues The rows of the page
+     * @param page The page of the list, starting at 1
+     * @throws Exception If the rows could not be written
+     */
+    private static void writeMoviePage(Context context, Uri uri, ContentValues[] moviesValues, int page)
+            throws Exception {
+
+        // Check for an error in the moviesValues, and only insert data when no error.
+        if (moviesValues == null || moviesValues.length == 0) {
+            return;
+        }
+
+        synchronized (getWriteLock(uri)) {
+
+            // The page was cancelled while another one of the list was written
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException("Page " + page + " of " + uri + " was cancelled");
             }
 
-            // Check for an error in the moviesValues, and only insert data when no error.
-            if (moviesValues != null && moviesValues.length != 0) {
+            // Create Content Resolver
+            ContentResolver movieContentResolver = context.getContentResolver();
 
-                // Create Content Resolver
-                ContentResolver movieContentResolver = context.getContentResolver();
+            // Only write the movies that were added, changed or dropped from this page
+            long firstRank = getFirstRank(page);
+            ArrayList<ContentProviderOperation> operations = MovieListDiff.buildOperations(
+                    movieContentResolver, uri, moviesValues,
+                    firstRank, firstRank + TheMovieDatabaseNetworkUtils.MOVIES_PER_PAGE);
 
-                // Delete the old data
-                movieContentResolver.delete(
-                        mUri,
-                        null,
-                        null);
+            // Apply them in a single transaction
+            if (!operations.isEmpty()) {
+                movieContentResolver.applyBatch(MoviesContract.AUTHORITY, operations);
+            }
+        }
+    }
 
-                // Insert the new data into ContentProvider
-                movieContentResolver.bulkInsert(
-                        mUri,
-                        moviesValues);
+    // The lock serializing the writes of a list
+    private static Object getWriteLock(Uri uri) {
+        synchronized (sWriteLocks) {
+            Object lock = sWriteLocks.get(uri);
+            if (lock == null) {
+                lock = new Object();
+                sWriteLocks.put(uri, lock);
             }
+            return lock;
+        }
+    }
 
-        } catch (Exception e) {
-            // Server probably invalid
-            e.printStackTrace();
+    // Whether any movie of a page is stored in a list
+    private static boolean isPageStored(Context context, Uri uri, int page) {
+        long firstRank = getFirstRank(page);
+        Cursor cursor = context.getContentResolver().query(
+                MoviesContract.MovieEntry.buildPageUri(uri, 1),
+                new String[]{MoviesContract.MovieEntry.COLUMN_MOVIE_ID},
+                MoviesContract.MovieEntry.COLUMN_RANK + " >= ? AND " + MoviesContract.MovieEntry.COLUMN_RANK + " < ?",
+                new String[]{String.valueOf(firstRank), String.valueOf(firstRank + TheMovieDatabaseNetworkUtils.MOVIES_PER_PAGE)},
+                null);
+        if (cursor == null) {
+            return false;
+        }
+        try {
+            return cursor.moveToFirst();
+        } finally {
+            cursor.close();
         }
     }
 
+    // Rank of the first movie of a page within the whole list
+    private static long getFirstRank(int page) {
+        return (long) (page - 1) * TheMovieDatabaseNetworkUtils.MOVIES_PER_PAGE;
+    }
+
 }
\ No newline at end of file
@@ -15,19 +15,193 @@
  */
 package com.kuruchy.android.and_mymovies.sync;
 
+import android.app.job.JobInfo;
+import android.app.job.JobScheduler;
+import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.support.annotation.NonNull;
 
+import com.kuruchy.android.and_mymovies.R;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
 public class MoviesSyncUtils {
+
+    // Pages queued or being fetched, as "category/page"
+    private static final Set<String> sRequestedPages = new HashSet<>();
+
+    // Pages after the first one stored since the first page of their list was last synced
+    private static final Set<String> sSyncedPages = new HashSet<>();
+
+    private static final int SYNC_JOB_ID = 1;
+
+    // Preferences holding the time each list was last synced
+    private static final String SYNC_PREFERENCES = "movies_sync";
+    private static final String LAST_SYNCED_PREFIX = "last_synced_";
+
+    private static boolean sInitialized;
+
+    /**
+     * Schedules the background refresh of the movie lists, unless it already is. The lists are
+     * refreshed on an unmetered network while charging, every time they get stale.
+     *
+     * @param context Context used to reach the JobScheduler.
+     */
+    synchronized public static void initialize(@NonNull final Context context) {
+
+        // Only schedule the job once per app lifetime
+        if (sInitialized) return;
+
+        sInitialized = true;
+
+        JobScheduler jobScheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        for (JobInfo pendingJob : jobScheduler.getAllPendingJobs()) {
+            if (pendingJob.getId() == SYNC_JOB_ID) {
+                return;
+            }
+        }
+
+        JobInfo syncJob = new JobInfo.Builder(SYNC_JOB_ID, new ComponentName(context, MoviesSyncJobService.class))
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_UNMETERED)
+                .setRequiresCharging(true)
+                .setPeriodic(getSyncTtlMillis(context))
+                .setPersisted(true)
+                .build();
+        jobScheduler.schedule(syncJob);
+    }
+
+    /**
+     * Helper method to perform a sync of a list immediately using a Service for asynchronous
+     * execution. Lists synced within their time to live are shown as stored.
+     *
+     * @param context The Context used to start the Service for the sync.
+     * @param category The list to sync.
+     */
+    public static void startImmediateSync(@NonNull final Context context, String category) {
+        if (!isStale(context, category)) {
+            return;
+        }
+        startPageSync(context, category, 1);
+    }
+
+    /**
+     * Returns whether a list was last synced longer ago than the time to live of the lists.
+     *
+     * @param context Context used to read the sync preferences.
+     * @param category The list.
+     * @return Whether the list should be synced.
+     */
+    public static boolean isStale(@NonNull Context context, String category) {
+        long lastSynced = getSyncPreferences(context).getLong(LAST_SYNCED_PREFIX + category, 0);
+        long age = System.currentTimeMillis() - lastSynced;
+        return age < 0 || age >= getSyncTtlMillis(context);
+    }
+
+    /**
+     * Records that the first page of a list was just synced.
+     *
+     * @param context Context used to write the sync preferences.
+     * @param category The list.
+     */
+    static void markSynced(@NonNull Context context, String category) {
+        getSyncPreferences(context).edit()
+                .putLong(LAST_SYNCED_PREFIX + category, System.currentTimeMillis())
+                .apply();
+    }
+
+    private static SharedPreferences getSyncPreferences(Context context) {
+        return context.getSharedPreferences(SYNC_PREFERENCES, Context.MODE_PRIVATE);
+    }
+
+    private static long getSyncTtlMillis(Context context) {
+        return TimeUnit.MINUTES.toMillis(context.getResources().getInteger(R.integer.sync_ttl_minutes));
+    }
+
     /**
-     * Helper method to perform a sync immediately using an IntentService for asynchronous
-     * execution.
+     * Helper method to fetch a page of a list into the database, using a Service for
+     * asynchronous execution. A page already being fetched is not requested again, and pages
+     * after the first one are only fetched once, since scrolling back never needs them again.
      *
-     * @param context The Context used to start the IntentService for the sync.
+     * @param context The Context used to start the Service for the sync.
+     * @param category The list to fetch the page from.
+     * @param page The page of the list, starting at 1.
      */
-    public static void startImmediateSync(@NonNull final Context context) {
-        Intent intentToSyncImmediately = new Intent(context, MoviesSyncIntentService.class);
-        context.startService(intentToSyncImmediately);
+    public static void startPageSync(@NonNull final Context context, String category, int page) {
+        if (!markPageRequested(category, page)) {
+            return;
+        }
+
+        Intent intentToSyncPage = new Intent(context, MoviesSyncService.class);
+        intentToSyncPage.putExtra(MoviesSyncService.EXTRA_CATEGORY, category);
+        intentToSyncPage.putExtra(MoviesSyncService.EXTRA_PAGE, page);
+        context.startService(intentToSyncPage);
+    }
+
+    /**
+     * Helper method to cancel the page syncs of every list but one, since the user left them.
+     *
+     * @param context The Context used to reach the Service of the syncs.
+     * @param keptCategory The list whose syncs go on.
+     */
+    public static void cancelOtherSyncs(@NonNull final Context context, String keptCategory) {
+        Intent intentToCancel = new Intent(context, MoviesSyncService.class);
+        intentToCancel.setAction(MoviesSyncService.ACTION_CANCEL_OTHER_CATEGORIES);
+        intentToCancel.putExtra(MoviesSyncService.EXTRA_CATEGORY, keptCategory);
+        context.startService(intentToCancel);
+    }
+
+    /**
+     * Marks a page as requested, unless it already is or it was stored after the last sync of
+     * the first page of its list.
+     *
+     * @param category The list the page belongs to.
+     * @param page The page of the list, starting at 1.
+     * @return Whether the page should be fetched.
+     */
+    static synchronized boolean markPageRequested(String category, int page) {
+        String pageKey = getPageKey(category, page);
+        return !sSyncedPages.contains(pageKey) && sRequestedPages.add(pageKey);
+    }
+
+    /**
+     * Called once a page sync is done. Failed pages and the first page can be requested again,
+     * the first page so the list is refreshed the next time it is opened.
+     *
+     * Once the first page is synced the list may have shifted, so the other pages stored before
+     * can be requested again too, and are refreshed when the grid scrolls to them.
+     *
+     * @param category The list the page belongs to.
+     * @param page The page of the list, starting at 1.
+     * @param synced Whether the page was synced.
+     */
+    static synchronized void onPageSyncFinished(String category, int page, boolean synced) {
+        sRequestedPages.remove(getPageKey(category, page));
+        if (!synced) {
+            return;
+        }
+
+        if (page == 1) {
+            String categoryPrefix = getPageKeyPrefix(category);
+            for (Iterator<String> iterator = sSyncedPages.iterator(); iterator.hasNext(); ) {
+                if (iterator.next().startsWith(categoryPrefix)) {
+                    iterator.remove();
+                }
+            }
+        } else {
+            sSyncedPages.add(getPageKey(category, page));
+        }
+    }
+
+    private static String getPageKey(String category, int page) {
+        return getPageKeyPrefix(category) + page;
+    }
+
+    private static String getPageKeyPrefix(String category) {
+        return category + "/";
     }
 }
\ No newline at end of file
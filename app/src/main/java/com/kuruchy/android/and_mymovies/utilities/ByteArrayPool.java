@@ -0,0 +1,119 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017.  Bruno Retolaza
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kuruchy.android.and_mymovies.utilities;
+
+import android.support.annotation.VisibleForTesting;
+
+import java.util.ArrayDeque;
+
+/**
+ * Byte Array Pool
+ *
+ * Keeps the buffers responses are read into, so each request does not allocate and grow its own.
+ * Buffers come in power of two sizes and only a few small ones are kept.
+ */
+final class ByteArrayPool {
+
+    static final int MIN_SIZE = 4 * 1024;
+
+    // Bigger buffers are not kept, a few pages of the movie lists fit in this
+    static final int MAX_POOLED_SIZE = 256 * 1024;
+
+    // Buffers kept of each size
+    static final int MAX_POOLED_PER_SIZE = 4;
+
+    // Pools of each power of two size, from MIN_SIZE to MAX_POOLED_SIZE
+    private static final ArrayDeque<byte[]>[] sPools = createPools();
+
+    private ByteArrayPool() {
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArrayDeque<byte[]>[] createPools() {
+        ArrayDeque<byte[]>[] pools = new ArrayDeque[getPoolIndex(MAX_POOLED_SIZE) + 1];
+        for (int i = 0; i < pools.length; i++) {
+            pools[i] = new ArrayDeque<>(MAX_POOLED_PER_SIZE);
+        }
+        return pools;
+    }
+
+    /**
+     * Returns a buffer of at least the given size, from the pool if there is one.
+     */
+    static byte[] acquire(int minSize) {
+        int size = getBufferSize(minSize);
+        if (size <= MAX_POOLED_SIZE) {
+            ArrayDeque<byte[]> pool = sPools[getPoolIndex(size)];
+            synchronized (pool) {
+                byte[] buffer = pool.poll();
+                if (buffer != null) {
+                    return buffer;
+                }
+            }
+        }
+        return new byte[size];
+    }
+
+    /**
+     * Gives a buffer back to the pool. It must not be used after.
+     */
+    static void release(byte[] buffer) {
+        int size = buffer.length;
+        if (size < MIN_SIZE || size > MAX_POOLED_SIZE || Integer.bitCount(size) != 1) {
+            return;
+        }
+        ArrayDeque<byte[]> pool = sPools[getPoolIndex(size)];
+        synchronized (pool) {
+            if (pool.size() < MAX_POOLED_PER_SIZE) {
+                pool.push(buffer);
+            }
+        }
+    }
+
+    /**
+     * Drops the kept buffers, so each test starts with empty pools.
+     */
+    @VisibleForTesting
+    static void clear() {
+        for (ArrayDeque<byte[]> pool : sPools) {
+            synchronized (pool) {
+                pool.clear();
+            }
+        }
+    }
+
+    // The power of two size holding the given number of bytes
+    private static int getBufferSize(int minSize) {
+        if (minSize <= MIN_SIZE) {
+            return MIN_SIZE;
+        }
+        int size = Integer.highestOneBit(minSize);
+        return size == minSize ? size : size << 1;
+    }
+
+    private static int getPoolIndex(int size) {
+        return Integer.numberOfTrailingZeros(size) - Integer.numberOfTrailingZeros(MIN_SIZE);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017.  Bruno Retolaza
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kuruchy.android.and_mymovies.utilities;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Movie Date Utils
+ *
+ * Converts the "yyyy-MM-dd" release dates of TheMovieDatabase to and from epoch days, the
+ * number of days since 1970-01-01, which is how they are stored in the database.
+ */
+public final class MovieDateUtils {
+
+    private static final String RELEASE_DATE_PATTERN = "yyyy-MM-dd";
+
+    private MovieDateUtils() {
+    }
+
+    /**
+     * Parses a release date into an epoch day.
+     *
+     * @param releaseDate The release date as "yyyy-MM-dd"
+     * @return The epoch day, or null if the date is missing or malformed
+     */
+    public static Long toEpochDay(String releaseDate) {
+        if (releaseDate == null || releaseDate.isEmpty()) {
+            return null;
+        }
+
+        try {
+            Date date = newReleaseDateFormat().parse(releaseDate);
+            return TimeUnit.MILLISECONDS.toDays(date.getTime());
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Formats an epoch day as a release date.
+     *
+     * @param epochDay Days since 1970-01-01
+     * @return The release date as "yyyy-MM-dd"
+     */
+    public static String fromEpochDay(long epochDay) {
+        return newReleaseDateFormat().format(new Date(TimeUnit.DAYS.toMillis(epochDay)));
+    }
+
+    // SimpleDateFormat is not thread safe, so each call gets its own
+    private static SimpleDateFormat newReleaseDateFormat() {
+        SimpleDateFormat format = new SimpleDateFormat(RELEASE_DATE_PATTERN, Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        format.setLenient(false);
+        return format;
+    }
+}
\ No newline at end of file
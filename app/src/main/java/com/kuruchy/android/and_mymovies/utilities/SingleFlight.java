@@ -0,0 +1,149 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017.  Bruno Retolaza
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kuruchy.android.and_mymovies.utilities;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Single Flight
+ *
+ * Runs a call once for all the callers asking for the same key at the same time: the first
+ * caller runs it, the others wait for it and get the same result or failure. Calls made after it
+ * finished run again. A JoinableCall is told about the callers joining it, e.g. to hurry up for
+ * a more urgent one.
+ *
+ * @param <V> Type of the result of the calls.
+ */
+public final class SingleFlight<V> {
+
+    /**
+     * A call whose result can be shared.
+     */
+    public interface Call<V> {
+        V call() throws IOException;
+    }
+
+    /**
+     * A call told about the callers joining it while it runs.
+     */
+    public interface JoinableCall<V> extends Call<V> {
+        /**
+         * Called on the thread of the caller joining the call.
+         *
+         * @param joining The call the joining caller would have run.
+         */
+        void onJoin(Call<V> joining);
+    }
+
+    // A call running, as the task its callers wait for
+    private static final class Flight<V> extends FutureTask<V> {
+        final Call<V> call;
+
+        Flight(final Call<V> call) {
+            super(new Callable<V>() {
+                @Override
+                public V call() throws Exception {
+                    return call.call();
+                }
+            });
+            this.call = call;
+        }
+    }
+
+    // Calls running, by key
+    private final Map<String, Flight<V>> mCalls = new HashMap<>();
+
+    /**
+     * Runs the call, or waits for the one running with the same key.
+     *
+     * @param key Identifies the calls that give the same result.
+     * @param call The call to run if none is running.
+     * @return The result of the call.
+     * @throws IOException If the call failed.
+     */
+    public V run(String key, Call<V> call) throws IOException {
+        while (true) {
+            Flight<V> task;
+            boolean isOwner = false;
+
+            synchronized (mCalls) {
+                task = mCalls.get(key);
+                if (task == null) {
+                    task = new Flight<>(call);
+                    mCalls.put(key, task);
+                    isOwner = true;
+                }
+            }
+
+            if (!isOwner && task.call instanceof JoinableCall) {
+                ((JoinableCall<V>) task.call).onJoin(call);
+            }
+
+            if (isOwner) {
+                try {
+                    task.run();
+                } finally {
+                    synchronized (mCalls) {
+                        mCalls.remove(key);
+                    }
+                }
+            }
+
+            try {
+                return task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for " + key);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+
+                // The caller running it was cancelled, this one still wants the result
+                if (!isOwner && cause instanceof InterruptedIOException
+                        && !(cause instanceof SocketTimeoutException)
+                        && !Thread.currentThread().isInterrupted()) {
+                    continue;
+                }
+
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017.  Bruno Retolaza
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kuruchy.android.and_mymovies.utilities;
+
+import android.os.SystemClock;
+import android.support.annotation.VisibleForTesting;
+
+/**
+ * The Movie Database Circuit Breaker
+ *
+ * Stops asking the movies server after several requests in a row fail, e.g. with no network,
+ * instead of failing again on every navigation change. After a while a single request is let
+ * through to check the server; the circuit closes again when it succeeds.
+ */
+final class TheMovieDatabaseCircuitBreaker {
+
+    // Failures in a row that open the circuit
+    private static final int FAILURE_THRESHOLD = 5;
+
+    // Time the circuit stays open before a request checks the server again
+    private static final long OPEN_MILLIS = 30 * 1000;
+
+    private static int sFailures;
+    private static long sOpenUntil;
+    // Whether a request is checking the server while the circuit is open
+    private static boolean sTrialInFlight;
+
+    private TheMovieDatabaseCircuitBreaker() {
+    }
+
+    /**
+     * Returns whether a request can be made to the server. Once the circuit has been open long
+     * enough, only the first caller is let through until its request is reported.
+     */
+    static synchronized boolean allowRequest() {
+        if (sFailures < FAILURE_THRESHOLD) {
+            return true;
+        }
+        if (sTrialInFlight || SystemClock.elapsedRealtime() < sOpenUntil) {
+            return false;
+        }
+        sTrialInFlight = true;
+        return true;
+    }
+
+    /**
+     * Reports that the server answered, closing the circuit.
+     */
+    static synchronized void onSuccess() {
+        sFailures = 0;
+        sTrialInFlight = false;
+    }
+
+    /**
+     * Reports that a request was cancelled before the server answered, telling nothing about it.
+     */
+    static synchronized void onCancelled() {
+        sTrialInFlight = false;
+    }
+
+    /**
+     * Reports that the server could not be reached or failed, opening the circuit once too many
+     * requests in a row failed.
+     */
+    static synchronized void onFailure() {
+        sFailures++;
+        sTrialInFlight = false;
+        if (sFailures >= FAILURE_THRESHOLD) {
+            sOpenUntil = SystemClock.elapsedRealtime() + OPEN_MILLIS;
+        }
+    }
+
+    /**
+     * Closes the circuit, so each test starts with the server trusted.
+     */
+    @VisibleForTesting
+    static synchronized void reset() {
+        sFailures = 0;
+        sOpenUntil = 0;
+        sTrialInFlight = false;
+    }
+
+    /**
+     * Ends the time the circuit stays open, as if OPEN_MILLIS had passed.
+     */
+    @VisibleForTesting
+    static synchronized void expireOpenPeriod() {
+        sOpenUntil = SystemClock.elapsedRealtime();
+    }
+}
@@ -24,13 +24,21 @@
 
 package com.kuruchy.android.and_mymovies.utilities;
 
+import android.content.ContentValues;
+import android.util.JsonReader;
+import android.util.JsonToken;
+
 import com.kuruchy.android.and_mymovies.Movie;
+import com.kuruchy.android.and_mymovies.data.MoviesContract;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 
 /**
  * The Movie Database Jason Utils
@@ -39,7 +47,27 @@ import java.io.IOException;
 public final class TheMovieDatabaseJsonUtils {
 
     /**
-     * This method parses JSON and returns an array of Movies
+     * Receives the rows parsed from a movie list, see parseMovieRows.
+     */
+    public interface MovieRowSink {
+
+        /**
+         * Returns the ContentValues the next movie is written into.
+         */
+        ContentValues newRow();
+
+        /**
+         * Called once all the columns of a movie are in its row.
+         *
+         * @param row The row returned by newRow
+         */
+        void onRowParsed(ContentValues row);
+    }
+
+    /**
+     * This method parses JSON and returns an array of Movies. It builds the whole JSON tree of
+     * the response first; the sync parses pages with parseMovieRows instead, and this method is
+     * kept to compare both in TheMovieDatabaseJsonBenchmark.
      *
      * @param movieListJSONString JSON string returned from server
      * @return Array of Movies
@@ -79,7 +107,7 @@ public final class TheMovieDatabaseJsonUtils {
 
             Movie movie = new Movie();
 
-            movie.setPoster_path(TheMovieDatabaseNetworkUtils.MOVIES_POSTER_BASE_URL + movieObject.getString(TMD_POSTER_PATH));
+            movie.setPoster_path(movieObject.getString(TMD_POSTER_PATH));
             movie.setAdult(movieObject.getBoolean(TMD_ADULT));
             movie.setOverview(movieObject.getString(TMD_OVERVIEW));
             movie.setRelease_date(movieObject.getString(TMD_RELEASE_DATE));
@@ -88,7 +116,7 @@ public final class TheMovieDatabaseJsonUtils {
             movie.setOriginal_title(movieObject.getString(TMD_ORIGINAL_TITLE));
             movie.setOriginal_language(movieObject.getString(TMD_ORIGINAL_LANGUAGE));
             movie.setTitle(movieObject.getString(TMD_TITLE));
-            movie.setBackdrop_path(TheMovieDatabaseNetworkUtils.MOVIES_BACKDROP_BASE_URL + movieObject.getString(TMD_BACKDROP_PATH));
+            movie.setBackdrop_path(movieObject.getString(TMD_BACKDROP_PATH));
             movie.setTrailer_path("path");
             movie.setTrailer_thumbnail_path("thumb");
             movie.setPopularity(movieObject.getDouble(TMD_POPULARITY));
@@ -103,85 +131,270 @@ public final class TheMovieDatabaseJsonUtils {
     }
 
     /**
-     * This method parses JSON and returns an array of urls for each trailer
+     * Same as parseMovieRows(Reader, MovieRowSink), reading the JSON from a UTF-8 stream.
      *
-     * @param movieTrailerListJSONString JSON string returned from server
-     * @return Array of Trailers
-     * @throws JSONException If JSON data cannot be properly parsed
+     * @param in Stream of the JSON returned from server, closed when done
+     * @param sink Supplies the rows and receives them once parsed
+     * @return The number of movies parsed
+     * @throws IOException If the stream cannot be read or the JSON data cannot be parsed
      */
-    public static String[] getVideoInfoFromJSONData(String movieTrailerListJSONString)
-            throws JSONException {
-
-        final String TMD_RESULTS = "results";
-        final String TMD_TRAILER_ID = "id";
-        final String TMD_TRAILER_ISO_639_1 = "iso_639_1";
-        final String TMD_TRAILER_ISO_3166_1 = "iso_3166_1";
-        final String TMD_TRAILER_KEY = "key";
-        final String TMD_TRAILER_NAME = "name";
-        final String TMD_TRAILER_SITE = "site";
-        final String TMD_TRAILER_SIZE = "size";
-        final String TMD_TRAILER_TYPE = "type";
-
-        String[] parsedTrailerData = null;
+    public static int parseMovieRows(InputStream in, MovieRowSink sink) throws IOException {
+        return parseMovieRows(new InputStreamReader(in, "UTF-8"), sink);
+    }
 
-        JSONObject movieTrailerJson = new JSONObject(movieTrailerListJSONString);
+    /**
+     * This method parses JSON token by token and writes each movie of the list straight into
+     * the columns of a movies row, with no intermediate Movie. The rows hold the columns the
+     * server lists: movie id, titles, poster and backdrop paths, synopsis, global rating and
+     * release date as an epoch day.
+     *
+     * @param in Reader of the JSON returned from server, closed when done
+     * @param sink Supplies the rows and receives them once parsed
+     * @return The number of movies parsed
+     * @throws IOException If the reader cannot be read or the JSON data cannot be parsed
+     */
+    public static int parseMovieRows(Reader in, MovieRowSink sink) throws IOException {
 
-        JSONArray movieTrailerArray = movieTrailerJson.getJSONArray(TMD_RESULTS);
+        /* Movie information. Each movie info is an element of the "results" array */
+        final String TMD_RESULTS = "results";
 
-        parsedTrailerData = new String[movieTrailerArray.length()];
+        JsonReader reader = new JsonReader(in);
+        try {
+            int rowCount = -1;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals(TMD_RESULTS)) {
+                    rowCount = 0;
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        ContentValues row = sink.newRow();
+                        readMovieRow(reader, row);
+                        sink.onRowParsed(row);
+                        rowCount++;
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (rowCount < 0) {
+                throw new IOException("No " + TMD_RESULTS + " in the movie list");
+            }
+
+            return rowCount;
+        } catch (IllegalStateException | NumberFormatException e) {
+            // Tokens of an unexpected type
+            throw new IOException(e);
+        } finally {
+            reader.close();
+        }
+    }
 
-        for (int i = 0; i < movieTrailerArray.length(); i++) {
+    // Reads the movie the reader is at into the columns of a row
+    private static void readMovieRow(JsonReader reader, ContentValues row) throws IOException {
 
-            JSONObject movieObject = movieTrailerArray.getJSONObject(i);
+        final String TMD_POSTER_PATH = "poster_path";
+        final String TMD_OVERVIEW = "overview";
+        final String TMD_RELEASE_DATE = "release_date";
+        final String TMD_ID = "id";
+        final String TMD_ORIGINAL_TITLE = "original_title";
+        final String TMD_TITLE = "title";
+        final String TMD_BACKDROP_PATH = "backdrop_path";
+        final String TMD_VOTE_AVERAGE = "vote_average";
 
-            String movieTrailerURL = new String();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case TMD_POSTER_PATH:
+                    row.put(MoviesContract.MovieEntry.COLUMN_POSTER_PATH, nextString(reader));
+                    break;
+                case TMD_OVERVIEW:
+                    row.put(MoviesContract.MovieEntry.COLUMN_SYNOPSIS, nextString(reader));
+                    break;
+                case TMD_RELEASE_DATE:
+                    row.put(MoviesContract.MovieEntry.COLUMN_RELEASE_DATE, MovieDateUtils.toEpochDay(nextString(reader)));
+                    break;
+                case TMD_ID:
+                    row.put(MoviesContract.MovieEntry.COLUMN_MOVIE_ID, reader.nextInt());
+                    break;
+                case TMD_ORIGINAL_TITLE:
+                    row.put(MoviesContract.MovieEntry.COLUMN_MOVIE_ORG_TITLE, nextString(reader));
+                    break;
+                case TMD_TITLE:
+                    row.put(MoviesContract.MovieEntry.COLUMN_MOVIE_TITLE, nextString(reader));
+                    break;
+                case TMD_BACKDROP_PATH:
+                    row.put(MoviesContract.MovieEntry.COLUMN_BACKDROP_PATH, nextString(reader));
+                    break;
+                case TMD_VOTE_AVERAGE:
+                    row.put(MoviesContract.MovieEntry.COLUMN_GLOBAL_RATING, reader.nextDouble());
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+    }
 
-            movieTrailerURL += TheMovieDatabaseNetworkUtils.MOVIES_TRAILER_YOUTUBE_BASE_URL +
-                    movieObject.getString(TMD_TRAILER_KEY);
+    // Reads the value of a field of a movie, returns false if the field is not one of a Movie
+    private static boolean readMovieField(JsonReader reader, String name, Movie movie) throws IOException {
 
+        final String TMD_POSTER_PATH = "poster_path";
+        final String TMD_ADULT = "adult";
+        final String TMD_OVERVIEW = "overview";
+        final String TMD_RELEASE_DATE = "release_date";
+        final String TMD_ID = "id";
+        final String TMD_ORIGINAL_TITLE = "original_title";
+        final String TMD_ORIGINAL_LANGUAGE = "original_language";
+        final String TMD_TITLE = "title";
+        final String TMD_BACKDROP_PATH = "backdrop_path";
+        final String TMD_POPULARITY = "popularity";
+        final String TMD_VOTE_COUNT = "vote_count";
+        final String TMD_VIDEO = "video";
+        final String TMD_VOTE_AVERAGE = "vote_average";
 
-            parsedTrailerData[i] = movieTrailerURL;
+        switch (name) {
+            case TMD_POSTER_PATH:
+                movie.setPoster_path(nextString(reader));
+                break;
+            case TMD_ADULT:
+                movie.setAdult(reader.nextBoolean());
+                break;
+            case TMD_OVERVIEW:
+                movie.setOverview(nextString(reader));
+                break;
+            case TMD_RELEASE_DATE:
+                movie.setRelease_date(nextString(reader));
+                break;
+            case TMD_ID:
+                movie.setId(reader.nextInt());
+                break;
+            case TMD_ORIGINAL_TITLE:
+                movie.setOriginal_title(nextString(reader));
+                break;
+            case TMD_ORIGINAL_LANGUAGE:
+                movie.setOriginal_language(nextString(reader));
+                break;
+            case TMD_TITLE:
+                movie.setTitle(nextString(reader));
+                break;
+            case TMD_BACKDROP_PATH:
+                movie.setBackdrop_path(nextString(reader));
+                break;
+            case TMD_POPULARITY:
+                movie.setPopularity(reader.nextDouble());
+                break;
+            case TMD_VOTE_COUNT:
+                movie.setVote_count(reader.nextInt());
+                break;
+            case TMD_VIDEO:
+                movie.setVideo(reader.nextBoolean());
+                break;
+            case TMD_VOTE_AVERAGE:
+                movie.setVote_average(reader.nextDouble());
+                break;
+            default:
+                return false;
         }
+        return true;
+    }
 
-        return parsedTrailerData;
+    // Reads a string, null values are read as "null" like JSONObject.getString does
+    private static String nextString(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return "null";
+        }
+        return reader.nextString();
     }
 
     /**
-     * This method parses JSON and returns an array of urls for each review
+     * This method parses the JSON of a movie detail request with its videos and reviews
+     * appended, in a single pass. The Movie holds the details, the url of the first trailer
+     * and the first review; the trailer and the review are null if the movie has none.
      *
-     * @param movieReviewListJSONString JSON string returned from server
-     * @return Array of Reviews
-     * @throws JSONException If JSON data cannot be properly parsed
+     * @param in Stream of the JSON returned from server, closed when done
+     * @return The Movie with its details, trailer and review
+     * @throws IOException If the stream cannot be read or the JSON data cannot be parsed
      */
-    public static String[] getReviewInfoFromJSONData(String movieReviewListJSONString)
-            throws JSONException {
+    public static Movie getMovieDetailFromJsonStream(InputStream in) throws IOException {
 
-        final String TMD_RESULTS = "results";
-        final String TMD_REVIEW_ID = "id";
-        final String TMD_REVIEW_AUTHOR = "author";
+        final String TMD_VIDEOS = "videos";
+        final String TMD_TRAILER_KEY = "key";
+        final String TMD_REVIEWS = "reviews";
         final String TMD_REVIEW_CONTENT = "content";
-        final String TMD_REVIEW_URL = "url";
-
-        String[] parsedTrailerData = null;
-
-        JSONObject movieTrailerJson = new JSONObject(movieReviewListJSONString);
-
-        JSONArray movieTrailerArray = movieTrailerJson.getJSONArray(TMD_RESULTS);
 
-        parsedTrailerData = new String[movieTrailerArray.length()];
-
-        for (int i = 0; i < movieTrailerArray.length(); i++) {
-
-            JSONObject movieObject = movieTrailerArray.getJSONObject(i);
+        JsonReader reader = new JsonReader(new InputStreamReader(in, "UTF-8"));
+        try {
+            Movie movie = new Movie();
 
-            String movieReviewURL = new String();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (name.equals(TMD_VIDEOS)) {
+                    String trailerKey = readFirstResultField(reader, TMD_TRAILER_KEY);
+                    if (trailerKey != null) {
+                        movie.setTrailer_path(TheMovieDatabaseNetworkUtils.MOVIES_TRAILER_YOUTUBE_BASE_URL + trailerKey);
+                    }
+                } else if (name.equals(TMD_REVIEWS)) {
+                    movie.setReviews(readFirstResultField(reader, TMD_REVIEW_CONTENT));
+                } else if (!readMovieField(reader, name, movie)) {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            return movie;
+        } catch (IllegalStateException | NumberFormatException e) {
+            // Tokens of an unexpected type
+            throw new IOException(e);
+        } finally {
+            reader.close();
+        }
+    }
 
-            movieReviewURL = movieObject.getString(TMD_REVIEW_CONTENT);
+    // Reads a field of the first element of the "results" array of the object the reader is at,
+    // or null if there are no results
+    private static String readFirstResultField(JsonReader reader, String field) throws IOException {
 
+        final String TMD_RESULTS = "results";
 
-            parsedTrailerData[i] = movieReviewURL;
+        String value = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!reader.nextName().equals(TMD_RESULTS)) {
+                reader.skipValue();
+                continue;
+            }
+
+            reader.beginArray();
+            while (reader.hasNext()) {
+                if (value != null) {
+                    reader.skipValue();
+                    continue;
+                }
+
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    // The name is always read, skipValue only skips values
+                    String name = reader.nextName();
+                    if (value == null && name.equals(field)) {
+                        value = nextString(reader);
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            }
+            reader.endArray();
         }
+        reader.endObject();
 
-        return parsedTrailerData;
+        return value;
     }
-}
\ No newline at end of file
+}
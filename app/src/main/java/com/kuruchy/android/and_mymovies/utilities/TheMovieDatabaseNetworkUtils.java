@@ -24,14 +24,21 @@
 
 package com.kuruchy.android.and_mymovies.utilities;
 
+import android.content.Context;
+import android.net.ConnectivityManager;
 import android.net.Uri;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.Scanner;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
 
 /**
  * The Movie Database Network Utils
@@ -41,18 +48,46 @@ import java.util.Scanner;
  */
 public final class TheMovieDatabaseNetworkUtils {
 
-    private static final String W185 = "w185";
-    private static final String W342 = "w342";
-    private static final String W500 = "w500";
-
-    private static final String QUALITY = W185;
     private static final String MOVIES_BASE_URL = "https://api.themoviedb.org/3/movie/";
-    public static final String MOVIES_POSTER_BASE_URL = "https://image.tmdb.org/t/p/" + QUALITY;
-    public static final String MOVIES_BACKDROP_BASE_URL = "https://image.tmdb.org/t/p/" + W500;
+    private static final String MOVIES_IMAGE_BASE_URL = "https://image.tmdb.org/t/p/w";
     public static final String MOVIES_TRAILER_YOUTUBE_BASE_URL = "https://www.youtube.com/watch?v=";
 
     private static final String language = "en-US";
-    public static int page = 1;
+
+    // Widths in pixels of the image sizes served, smallest first
+    private static final int[] POSTER_WIDTHS = {92, 154, 185, 342, 500, 780};
+    private static final int[] BACKDROP_WIDTHS = {300, 780, 1280};
+
+    // Over metered connections images are picked for this part of their view width,
+    // a size smaller when the view is just above one
+    private static final float METERED_WIDTH_SCALE = 0.75f;
+
+    // Movies in each page of the movie lists
+    public static final int MOVIES_PER_PAGE = 20;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String GZIP = "gzip";
+
+    // Bytes expected of a body of unknown length, about a page of a movie list
+    private static final int DEFAULT_BODY_LENGTH = 16 * 1024;
+
+    // How many times a JSON body grows when it is inflated, to size its buffer
+    private static final int GZIP_EXPANSION = 4;
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 10 * 1000;
+    private static final int READ_TIMEOUT_MILLIS = 15 * 1000;
+
+    // Requests made for a response before giving up, the first one included
+    static final int MAX_ATTEMPTS = 3;
+    private static final long INITIAL_BACKOFF_MILLIS = 1000;
+    private static final long MAX_BACKOFF_MILLIS = 10 * 1000;
+    // Longer waits asked by the server are not waited for, the request fails instead
+    private static final long MAX_RETRY_AFTER_MILLIS = 30 * 1000;
+
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    // Requests running, by URL without the api key
+    private static final SingleFlight<Response> sRequests = new SingleFlight<>();
 
     private static String api_key;
 
@@ -61,17 +96,20 @@ public final class TheMovieDatabaseNetworkUtils {
     public final static String TOP_RATED = "top_rated";
     public final static String POPULAR = "popular";
     public final static String FAVORITE = "favorite";
-    public static String SORTING_PARAM = TOP_RATED;
     final static String LANGUAGE_PARAM = "language";
     final static String PAGE_PARAM = "page";
+    final static String APPEND_TO_RESPONSE_PARAM = "append_to_response";
+    final static String VIDEOS = "videos";
+    final static String REVIEWS = "reviews";
 
     /**
      * Builds the URL used to talk to the movie server using a sorting method.
      *
      * @param sortingParam The sorting method
+     * @param page The page of the list, starting at 1
      * @return The URL to use to query the movies server.
      */
-    public static URL buildMovieUrl(String sortingParam) {
+    public static URL buildMovieUrl(String sortingParam, int page) {
         Uri builtUri = Uri.parse(MOVIES_BASE_URL + sortingParam + QUERY_PARAM).buildUpon()
                 .appendQueryParameter(API_KEY_PARAM, api_key)
                 .appendQueryParameter(LANGUAGE_PARAM, language)
@@ -88,15 +126,17 @@ public final class TheMovieDatabaseNetworkUtils {
     }
 
     /**
-     * Builds the URL used to talk to the movie server using a sorting method.
+     * Builds the URL of the details of a movie, with its videos and reviews appended so they
+     * come in the same request.
      *
      * @param movieId The Movie ID
      * @return The URL to use to query the movies server.
      */
-    public static URL buildMovieReviewUrl(int movieId) {
-        Uri builtUri = Uri.parse(MOVIES_BASE_URL + movieId + "/reviews" + QUERY_PARAM).buildUpon()
+    public static URL buildMovieDetailUrl(int movieId) {
+        Uri builtUri = Uri.parse(MOVIES_BASE_URL + movieId + QUERY_PARAM).buildUpon()
                 .appendQueryParameter(API_KEY_PARAM, api_key)
                 .appendQueryParameter(LANGUAGE_PARAM, language)
+                .appendQueryParameter(APPEND_TO_RESPONSE_PARAM, VIDEOS + "," + REVIEWS)
                 .build();
 
         URL url = null;
@@ -109,52 +149,388 @@ public final class TheMovieDatabaseNetworkUtils {
     }
 
     /**
-     * Builds the URL used to talk to the movie server using a sorting method.
+     * Builds the URL of a poster in the smallest size that fills a view.
      *
-     * @param movieId The Movie ID
-     * @return The URL to use to query the movies server.
+     * @param posterPath The TMDB path of the poster, as stored in the database
+     * @param widthPx Width of the view in pixels
+     * @param metered Whether the connection is metered, so a smaller size is enough
+     * @return The URL of the poster, null if the movie has none
      */
-    public static URL buildMovieTrailerUrl(int movieId) {
-        Uri builtUri = Uri.parse(MOVIES_BASE_URL + movieId + "/videos" + QUERY_PARAM).buildUpon()
-                .appendQueryParameter(API_KEY_PARAM, api_key)
-                .appendQueryParameter(LANGUAGE_PARAM, language)
-                .build();
+    public static String buildPosterUrl(String posterPath, int widthPx, boolean metered) {
+        return buildImageUrl(posterPath, POSTER_WIDTHS, widthPx, metered);
+    }
 
-        URL url = null;
-        try {
-            url = new URL(builtUri.toString());
-        } catch (MalformedURLException e) {
-            e.printStackTrace();
+    /**
+     * Builds the URL of a backdrop in the smallest size that fills a view.
+     *
+     * @param backdropPath The TMDB path of the backdrop, as stored in the database
+     * @param widthPx Width of the view in pixels
+     * @param metered Whether the connection is metered, so a smaller size is enough
+     * @return The URL of the backdrop, null if the movie has none
+     */
+    public static String buildBackdropUrl(String backdropPath, int widthPx, boolean metered) {
+        return buildImageUrl(backdropPath, BACKDROP_WIDTHS, widthPx, metered);
+    }
+
+    /**
+     * Builds the URL of the smallest backdrop, shown while the one sized for the view downloads.
+     *
+     * @param backdropPath The TMDB path of the backdrop, as stored in the database
+     * @param widthPx Width of the view in pixels
+     * @param metered Whether the connection is metered, so a smaller size is enough
+     * @return The URL of the smallest backdrop, null if the movie has none or the view is
+     * loaded with that size already
+     */
+    public static String buildBackdropPreviewUrl(String backdropPath, int widthPx, boolean metered) {
+        String previewUrl = buildBackdropUrl(backdropPath, 0, metered);
+        if (previewUrl == null || previewUrl.equals(buildBackdropUrl(backdropPath, widthPx, metered))) {
+            return null;
         }
-        return url;
+        return previewUrl;
+    }
+
+    private static String buildImageUrl(String imagePath, int[] widths, int widthPx, boolean metered) {
+        // Paths start with a slash, movies without image have none
+        if (imagePath == null || !imagePath.startsWith("/")) {
+            return null;
+        }
+        int targetWidth = metered ? (int) (widthPx * METERED_WIDTH_SCALE) : widthPx;
+        // Past the largest size the image is scaled up
+        int width = widths[widths.length - 1];
+        for (int size : widths) {
+            if (size >= targetWidth) {
+                width = size;
+                break;
+            }
+        }
+        return MOVIES_IMAGE_BASE_URL + width + imagePath;
+    }
+
+    /**
+     * Checks whether the data used now is metered, e.g. over mobile data.
+     *
+     * @param context Context used to get the connectivity service
+     * @return True if the active network is metered
+     */
+    public static boolean isMeteredConnection(Context context) {
+        ConnectivityManager connectivityManager =
+                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        return connectivityManager == null || connectivityManager.isActiveNetworkMetered();
+    }
+
+    /**
+     * A response of the movies server.
+     */
+    public static final class Response {
+        private final byte[] body;
+        // False when the body is the one the last request returned, so it needs no parsing
+        public final boolean changed;
+        // False when the body is a stale cached one served while the server is failing, so it
+        // tells nothing about what the server has now
+        public final boolean confirmed;
+
+        Response(byte[] body, boolean changed, boolean confirmed) {
+            this.body = body;
+            this.changed = changed;
+            this.confirmed = confirmed;
+        }
+
+        /**
+         * Returns a stream of the body, so it can be parsed without decoding it into a String.
+         */
+        public InputStream getBodyStream() {
+            return new ByteArrayInputStream(body);
+        }
+
+        /**
+         * Returns the body decoded, or null if it is empty.
+         */
+        public String getBodyString() {
+            return body.length == 0 ? null : new String(body, UTF_8);
+        }
+    }
+
+    /**
+     * This method returns the data from an HTTP petition, going through the response cache.
+     * Fresh cached responses are returned without a request, stale ones are revalidated with a
+     * conditional request and returned as they are when the server answers 304 Not Modified.
+     * Bodies are requested gzipped.
+     *
+     * @param url The URL to fetch the HTTP response from.
+     * @return The response, telling whether it changed since the last one.
+     * @throws IOException Problem with network and/or stream reading
+     */
+    public static Response getCachedResponseFromHttpUrl(URL url) throws IOException {
+        return getCachedResponseFromHttpUrl(url, TheMovieDatabaseRequestScheduler.Priority.BACKGROUND);
     }
 
     /**
-     * This method returns the data from an HTTP petition.
+     * Same as getCachedResponseFromHttpUrl(URL), waiting for the request scheduler to let a
+     * request of the given priority through before asking the server.
+     *
+     * Network failures, 429 and 5xx responses are retried after a jittered exponential backoff,
+     * or after the time the server asks for in Retry-After. When too many requests in a row
+     * failed the server is left alone for a while, and the cached response is returned as it
+     * is, even if stale, and not confirmed.
+     *
+     * Callers asking for the same URL at the same time share a single request and response. The
+     * shared request waits at the most urgent priority of its callers.
      *
      * @param url The URL to fetch the HTTP response from.
-     * @return The response data that is returned from the HTTP petition.
+     * @param priority The priority of the request.
+     * @return The response, telling whether it changed since the last one.
      * @throws IOException Problem with network and/or stream reading
      */
-    public static String getResponseFromHttpUrl(URL url) throws IOException {
+    public static Response getCachedResponseFromHttpUrl(final URL url,
+                                                        final TheMovieDatabaseRequestScheduler.Priority priority)
+            throws IOException {
+        return sRequests.run(TheMovieDatabaseResponseCache.getKey(url), new ResponseCall(url, priority));
+    }
+
+    // Fetches a response, raising the priority it waits for the server at when a more urgent
+    // caller joins it
+    private static final class ResponseCall implements SingleFlight.JoinableCall<Response> {
+        private final URL mUrl;
+        private final TheMovieDatabaseRequestScheduler.Priority mPriority;
+        private final TheMovieDatabaseRequestScheduler.Ticket mTicket;
+
+        ResponseCall(URL url, TheMovieDatabaseRequestScheduler.Priority priority) {
+            mUrl = url;
+            mPriority = priority;
+            mTicket = new TheMovieDatabaseRequestScheduler.Ticket(priority);
+        }
+
+        @Override
+        public Response call() throws IOException {
+            return fetchResponse(mUrl, mTicket);
+        }
+
+        @Override
+        public void onJoin(SingleFlight.Call<Response> joining) {
+            if (joining instanceof ResponseCall) {
+                mTicket.raise(((ResponseCall) joining).mPriority);
+            }
+        }
+    }
+
+    // Gets a response from the cache or the server, retrying failed requests
+    private static Response fetchResponse(URL url, TheMovieDatabaseRequestScheduler.Ticket ticket)
+            throws IOException {
+        TheMovieDatabaseResponseCache.Entry cached = TheMovieDatabaseResponseCache.get(url);
+        if (cached != null && cached.isFresh(System.currentTimeMillis())) {
+            return new Response(cached.body, false, true);
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            if (!TheMovieDatabaseCircuitBreaker.allowRequest()) {
+                if (cached != null) {
+                    return new Response(cached.body, false, false);
+                }
+                throw new IOException("The movies server is failing, not asking it for now");
+            }
+
+            long retryAfterMillis = -1;
+            // Whether the circuit breaker was told how the request went
+            boolean reported = false;
+            try {
+                Response response = requestFromServer(url, ticket, cached);
+                TheMovieDatabaseCircuitBreaker.onSuccess();
+                reported = true;
+                return response;
+            } catch (ServerErrorException e) {
+                reported = true;
+                if (!e.isRetryable()) {
+                    // The server answered, the request itself is wrong
+                    TheMovieDatabaseCircuitBreaker.onSuccess();
+                    throw e;
+                }
+                TheMovieDatabaseCircuitBreaker.onFailure();
+                if (attempt == MAX_ATTEMPTS || e.retryAfterMillis > MAX_RETRY_AFTER_MILLIS) {
+                    throw e;
+                }
+                retryAfterMillis = e.retryAfterMillis;
+            } catch (IOException e) {
+                reported = true;
+                // Cancelled, e.g. the prefetch of a list the user left
+                if (Thread.currentThread().isInterrupted()) {
+                    TheMovieDatabaseCircuitBreaker.onCancelled();
+                    throw e;
+                }
+                TheMovieDatabaseCircuitBreaker.onFailure();
+                if (attempt == MAX_ATTEMPTS) {
+                    throw e;
+                }
+            } finally {
+                // Anything else thrown tells nothing about the server, but must not leave the
+                // circuit waiting for a request that will never be reported
+                if (!reported) {
+                    TheMovieDatabaseCircuitBreaker.onCancelled();
+                }
+            }
+
+            try {
+                Thread.sleep(retryAfterMillis >= 0 ? retryAfterMillis : getBackoffMillis(attempt));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to retry the request");
+            }
+        }
+    }
+
+    /**
+     * Makes a single request to the server, taking a token from the request scheduler.
+     */
+    private static Response requestFromServer(URL url, TheMovieDatabaseRequestScheduler.Ticket ticket,
+                                              TheMovieDatabaseResponseCache.Entry cached) throws IOException {
+
+        // Fresh cached responses cost nothing, only requests to the server take a token
+        TheMovieDatabaseRequestScheduler.acquire(ticket);
+
         HttpURLConnection httpURLConnection = (HttpURLConnection) url.openConnection();
         try {
-            InputStream inputStream = httpURLConnection.getInputStream();
+            httpURLConnection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+            httpURLConnection.setReadTimeout(READ_TIMEOUT_MILLIS);
+
+            // Asking for gzip ourselves turns off the transparent decompression, the body is
+            // inflated while it is read below
+            httpURLConnection.setRequestProperty("Accept-Encoding", GZIP);
+            if (cached != null) {
+                if (cached.eTag != null) {
+                    httpURLConnection.setRequestProperty("If-None-Match", cached.eTag);
+                }
+                if (cached.lastModified != null) {
+                    httpURLConnection.setRequestProperty("If-Modified-Since", cached.lastModified);
+                }
+            }
 
-            Scanner scanner = new Scanner(inputStream);
-            scanner.useDelimiter("\\A");
+            long now = System.currentTimeMillis();
+            int responseCode = httpURLConnection.getResponseCode();
+            if (cached != null && responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                TheMovieDatabaseResponseCache.put(url, cached.revalidated(httpURLConnection, now), httpURLConnection);
+                return new Response(cached.body, false, true);
+            }
+
+            if (responseCode >= HttpURLConnection.HTTP_BAD_REQUEST) {
+                throw new ServerErrorException(responseCode, getRetryAfterMillis(httpURLConnection, now));
+            }
 
-            boolean hasNext = scanner.hasNext();
-            if (hasNext) {
-                return scanner.next();
-            } else {
-                return null;
+            byte[] body = readBody(httpURLConnection);
+            if (responseCode == HttpURLConnection.HTTP_OK) {
+                TheMovieDatabaseResponseCache.put(url, new TheMovieDatabaseResponseCache.Entry(body,
+                        httpURLConnection.getHeaderField("ETag"),
+                        httpURLConnection.getHeaderField("Last-Modified"),
+                        TheMovieDatabaseResponseCache.getFreshUntil(httpURLConnection, now)),
+                        httpURLConnection);
             }
+            return new Response(body, true, true);
         } finally {
             httpURLConnection.disconnect();
         }
     }
 
+    /**
+     * An error status answered by the server.
+     */
+    private static final class ServerErrorException extends IOException {
+        final int responseCode;
+        // Time the server asked to wait before retrying, or -1
+        final long retryAfterMillis;
+
+        ServerErrorException(int responseCode, long retryAfterMillis) {
+            super("The movies server answered " + responseCode);
+            this.responseCode = responseCode;
+            this.retryAfterMillis = retryAfterMillis;
+        }
+
+        // Too many requests and server errors can succeed later, other errors will not
+        boolean isRetryable() {
+            return responseCode == HTTP_TOO_MANY_REQUESTS
+                    || responseCode >= HttpURLConnection.HTTP_INTERNAL_ERROR;
+        }
+    }
+
+    // Random time up to the exponential backoff of an attempt, so clients do not retry together
+    private static long getBackoffMillis(int attempt) {
+        long backoff = Math.min(MAX_BACKOFF_MILLIS, INITIAL_BACKOFF_MILLIS << (attempt - 1));
+        return (long) (Math.random() * backoff);
+    }
+
+    // The Retry-After of a response, in seconds or as a date, or -1 if it has none
+    private static long getRetryAfterMillis(HttpURLConnection httpURLConnection, long now) {
+        String retryAfter = httpURLConnection.getHeaderField("Retry-After");
+        if (retryAfter == null) {
+            return -1;
+        }
+        try {
+            return Math.max(0, Long.parseLong(retryAfter.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            long retryDate = httpURLConnection.getHeaderFieldDate("Retry-After", -1);
+            return retryDate < 0 ? -1 : Math.max(0, retryDate - now);
+        }
+    }
+
+    /**
+     * Reads the whole body of a response, inflating it if it is gzipped. It is read into a pooled
+     * buffer sized from the Content-Length, so only the returned copy is allocated.
+     *
+     * The body is read whole rather than parsed as it arrives: it is shared by the callers of the
+     * same URL, cached, served again on 304, and a read failing halfway is retried before anyone
+     * parses it. This costs a copy of the size of the body, and the parse starts after the last
+     * byte; TheMovieDatabaseBodyBenchmark measures it against parsing while inflating.
+     */
+    private static byte[] readBody(HttpURLConnection httpURLConnection) throws IOException {
+        return readBody(httpURLConnection.getInputStream(),
+                GZIP.equalsIgnoreCase(httpURLConnection.getContentEncoding()),
+                httpURLConnection.getContentLength());
+    }
+
+    /**
+     * Same as readBody(HttpURLConnection), reading the body from a stream.
+     *
+     * @param inputStream The body as sent by the server, closed when done.
+     * @param gzipped Whether the body is gzipped.
+     * @param contentLength The length of the body as sent, or -1 if unknown.
+     * @return The body, inflated.
+     * @throws IOException Problem with stream reading
+     */
+    static byte[] readBody(InputStream inputStream, boolean gzipped, int contentLength) throws IOException {
+        if (gzipped) {
+            inputStream = new GZIPInputStream(inputStream);
+        }
+
+        // Content-Length is the size on the wire, JSON inflates to a few times its gzipped size
+        int expectedLength = contentLength <= 0 ? DEFAULT_BODY_LENGTH
+                : gzipped ? contentLength * GZIP_EXPANSION : contentLength;
+
+        byte[] buffer = ByteArrayPool.acquire(expectedLength + 1);
+        try {
+            int length = 0;
+            int read;
+            while ((read = inputStream.read(buffer, length, buffer.length - length)) != -1) {
+                length += read;
+                if (length == buffer.length) {
+                    byte[] biggerBuffer = ByteArrayPool.acquire(buffer.length * 2);
+                    System.arraycopy(buffer, 0, biggerBuffer, 0, length);
+                    ByteArrayPool.release(buffer);
+                    buffer = biggerBuffer;
+                }
+            }
+            return Arrays.copyOf(buffer, length);
+        } finally {
+            ByteArrayPool.release(buffer);
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Sets the directory where the responses of the server are cached.
+     *
+     * @param directory The directory of the cache, e.g. a folder of the cache directory.
+     */
+    public static void setResponseCacheDirectory(File directory) {
+        TheMovieDatabaseResponseCache.setDirectory(directory);
+    }
+
     public static void setApi_key(String api_key) {
         TheMovieDatabaseNetworkUtils.api_key = api_key;
     }
@@ -0,0 +1,202 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017.  Bruno Retolaza
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kuruchy.android.and_mymovies.utilities;
+
+import android.os.SystemClock;
+import android.support.annotation.VisibleForTesting;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+
+/**
+ * The Movie Database Request Scheduler
+ *
+ * Every request to the movies server takes a token from a bucket refilled at the rate the api
+ * key allows, so bursts of scrolling and detail views stay under the limit of the server.
+ * Requests wait in a queue per priority: a request only gets a token when no request of a higher
+ * priority is waiting, and lower priorities leave a few tokens for the higher ones. A waiting
+ * request can be raised to a higher priority, e.g. when a more urgent caller shares it.
+ */
+public final class TheMovieDatabaseRequestScheduler {
+
+    /**
+     * Priority classes of the requests, from the most urgent.
+     */
+    public enum Priority {
+        // The user is looking at the detail of a movie
+        DETAIL(0),
+        // Pages the grid is about to show
+        NEXT_PAGE(2),
+        // Syncs nobody is waiting for
+        BACKGROUND(5);
+
+        // Tokens left in the bucket for the higher priorities
+        final int reservedTokens;
+
+        Priority(int reservedTokens) {
+            this.reservedTokens = reservedTokens;
+        }
+    }
+
+    // Requests that can be made at once
+    private static final int BUCKET_CAPACITY = 20;
+
+    // One token every 250 ms, 40 requests every 10 seconds
+    private static final long REFILL_INTERVAL_MILLIS = 250;
+
+    private static final Object sLock = new Object();
+
+    private static double sTokens = BUCKET_CAPACITY;
+    private static long sLastRefill = SystemClock.elapsedRealtime();
+
+    // Waiting requests of each priority, in arrival order
+    private static final ArrayDeque<Ticket>[] sQueues = createQueues();
+
+    /**
+     * The priority of a request, which can be raised while the request waits for its turn.
+     */
+    static final class Ticket {
+
+        // Guarded by sLock
+        private Priority mPriority;
+
+        Ticket(Priority priority) {
+            mPriority = priority;
+        }
+
+        /**
+         * Raises the priority of the request if the given one is more urgent. A waiting request
+         * moves to the end of the queue of its new priority.
+         *
+         * @param priority The priority the request is needed at.
+         */
+        void raise(Priority priority) {
+            synchronized (sLock) {
+                if (priority.ordinal() >= mPriority.ordinal()) {
+                    return;
+                }
+                if (sQueues[mPriority.ordinal()].remove(this)) {
+                    sQueues[priority.ordinal()].addLast(this);
+                    sLock.notifyAll();
+                }
+                mPriority = priority;
+            }
+        }
+    }
+
+    private TheMovieDatabaseRequestScheduler() {
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArrayDeque<Ticket>[] createQueues() {
+        ArrayDeque<Ticket>[] queues = new ArrayDeque[Priority.values().length];
+        for (int i = 0; i < queues.length; i++) {
+            queues[i] = new ArrayDeque<>();
+        }
+        return queues;
+    }
+
+    /**
+     * Blocks until a request can be made at the priority of the ticket, which may be raised
+     * while it waits.
+     *
+     * @param ticket The priority of the request.
+     * @throws InterruptedIOException If the thread is interrupted while waiting.
+     */
+    static void acquire(Ticket ticket) throws InterruptedIOException {
+        synchronized (sLock) {
+            sQueues[ticket.mPriority.ordinal()].addLast(ticket);
+            try {
+                while (true) {
+                    refill();
+
+                    Priority priority = ticket.mPriority;
+                    boolean isNext = sQueues[priority.ordinal()].peekFirst() == ticket
+                            && !isHigherPriorityWaiting(priority);
+                    if (isNext && sTokens >= 1 + priority.reservedTokens) {
+                        sTokens -= 1;
+                        return;
+                    }
+
+                    if (isNext) {
+                        // Wait for the tokens this priority needs to be refilled
+                        double missingTokens = 1 + priority.reservedTokens - sTokens;
+                        sLock.wait(Math.max(1, (long) Math.ceil(missingTokens * REFILL_INTERVAL_MILLIS)));
+                    } else {
+                        // Wait for the requests ahead to go
+                        sLock.wait();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to request the server");
+            } finally {
+                sQueues[ticket.mPriority.ordinal()].remove(ticket);
+                // Let the next request of this or a lower priority check its turn
+                sLock.notifyAll();
+            }
+        }
+    }
+
+    private static boolean isHigherPriorityWaiting(Priority priority) {
+        for (int i = 0; i < priority.ordinal(); i++) {
+            if (!sQueues[i].isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Fills the bucket, so each test starts with every request available.
+     */
+    @VisibleForTesting
+    static void reset() {
+        synchronized (sLock) {
+            sTokens = BUCKET_CAPACITY;
+            sLastRefill = SystemClock.elapsedRealtime();
+            sLock.notifyAll();
+        }
+    }
+
+    /**
+     * Leaves the given number of tokens in the bucket, so requests of the lower priorities wait.
+     */
+    @VisibleForTesting
+    static void setTokens(int tokens) {
+        synchronized (sLock) {
+            sTokens = tokens;
+            sLastRefill = SystemClock.elapsedRealtime();
+            sLock.notifyAll();
+        }
+    }
+
+    // Adds the tokens earned since the last refill
+    private static void refill() {
+        long now = SystemClock.elapsedRealtime();
+        sTokens = Math.min(BUCKET_CAPACITY, sTokens + (double) (now - sLastRefill) / REFILL_INTERVAL_MILLIS);
+        sLastRefill = now;
+    }
+}
@@ -0,0 +1,344 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017.  Bruno Retolaza
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kuruchy.android.and_mymovies.utilities;
+
+import android.support.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * The Movie Database Response Cache
+ *
+ * Disk backed cache of the responses of the movies server, keyed by their URL without the api
+ * key. Each entry keeps the validators (ETag and Last-Modified) and the freshness lifetime sent by
+ * the server, so fresh responses are served without a request and stale ones are revalidated
+ * with a conditional request. Once the entries take more than MAX_SIZE_BYTES the least recently
+ * used ones are deleted.
+ */
+final class TheMovieDatabaseResponseCache {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // Bumped whenever the layout of the entry files changes, older entries are ignored
+    private static final int ENTRY_FORMAT = 2;
+
+    private static final String CACHE_CONTROL_MAX_AGE = "max-age=";
+    private static final String CACHE_CONTROL_NO_STORE = "no-store";
+    private static final String CACHE_CONTROL_NO_CACHE = "no-cache";
+
+    // Bytes the entries can take on disk, hundreds of pages and movie details
+    static final long MAX_SIZE_BYTES = 4 * 1024 * 1024;
+
+    private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+
+    // Directory of the entries, responses are not cached until it is set
+    private static File sDirectory;
+
+    /**
+     * A cached response.
+     */
+    static final class Entry {
+        // The body as the server sent it, uncompressed
+        final byte[] body;
+        final String eTag;
+        final String lastModified;
+        // Time until which the body can be used without asking the server, in milliseconds
+        final long freshUntil;
+
+        Entry(byte[] body, String eTag, String lastModified, long freshUntil) {
+            this.body = body;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.freshUntil = freshUntil;
+        }
+
+        boolean isFresh(long now) {
+            return now < freshUntil;
+        }
+
+        // Whether the server can tell if the body changed
+        boolean canRevalidate() {
+            return eTag != null || lastModified != null;
+        }
+
+        /**
+         * Returns the same body with the validators and lifetime of a new response, e.g. a 304.
+         * Validators missing from the new response are kept.
+         */
+        Entry revalidated(HttpURLConnection connection, long now) {
+            String newETag = connection.getHeaderField("ETag");
+            String newLastModified = connection.getHeaderField("Last-Modified");
+            return new Entry(body,
+                    newETag != null ? newETag : eTag,
+                    newLastModified != null ? newLastModified : lastModified,
+                    getFreshUntil(connection, now));
+        }
+    }
+
+    private TheMovieDatabaseResponseCache() {
+    }
+
+    /**
+     * Sets the directory where the responses are stored, e.g. a folder of the cache directory of
+     * the app, so the system can clear it when the storage runs low.
+     *
+     * @param directory The directory of the entries.
+     */
+    static synchronized void setDirectory(File directory) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            return;
+        }
+        sDirectory = directory;
+    }
+
+    private static synchronized File getDirectory() {
+        return sDirectory;
+    }
+
+    /**
+     * Returns the cached response of an URL, or null if there is none.
+     */
+    @Nullable
+    static Entry get(URL url) {
+        File file = getEntryFile(url);
+        if (file == null || !file.isFile()) {
+            return null;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != ENTRY_FORMAT) {
+                return null;
+            }
+            String eTag = readOptionalString(in);
+            String lastModified = readOptionalString(in);
+            long freshUntil = in.readLong();
+            byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+            // Entries are evicted from the least recently used
+            file.setLastModified(System.currentTimeMillis());
+            return new Entry(body, eTag, lastModified, freshUntil);
+        } catch (IOException e) {
+            // Unreadable entries are dropped, the response is downloaded again
+            file.delete();
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Stores the response of an URL, replacing the previous one. Responses the server asks not to
+     * store, or that can neither be reused nor revalidated, are dropped.
+     */
+    static void put(URL url, Entry entry, HttpURLConnection connection) {
+        File file = getEntryFile(url);
+        if (file == null) {
+            return;
+        }
+
+        String cacheControl = connection.getHeaderField("Cache-Control");
+        if ((cacheControl != null && cacheControl.contains(CACHE_CONTROL_NO_STORE))
+                || (!entry.canRevalidate() && !entry.isFresh(System.currentTimeMillis()))) {
+            file.delete();
+            return;
+        }
+
+        // Write a temporary file and move it over the entry, so readers never see half an entry
+        File temporaryFile = new File(file.getPath() + "." + Thread.currentThread().getId() + TEMPORARY_FILE_SUFFIX);
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)));
+            out.writeInt(ENTRY_FORMAT);
+            writeOptionalString(out, entry.eTag);
+            writeOptionalString(out, entry.lastModified);
+            out.writeLong(entry.freshUntil);
+            out.writeInt(entry.body.length);
+            out.write(entry.body);
+            out.close();
+            out = null;
+
+            if (!temporaryFile.renameTo(file)) {
+                temporaryFile.delete();
+                return;
+            }
+            trimToSize(file);
+        } catch (IOException e) {
+            e.printStackTrace();
+            temporaryFile.delete();
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    /**
+     * Deletes the least recently used entries until they fit in MAX_SIZE_BYTES. It only runs after
+     * a response was downloaded, so listing the entries is cheap next to the request.
+     *
+     * @param keptFile The entry just written, never deleted.
+     */
+    private static void trimToSize(File keptFile) {
+        File[] files = keptFile.getParentFile().listFiles();
+        if (files == null) {
+            return;
+        }
+
+        long size = 0;
+        for (File file : files) {
+            size += file.length();
+        }
+        if (size <= MAX_SIZE_BYTES) {
+            return;
+        }
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File file, File otherFile) {
+                long lastModified = file.lastModified();
+                long otherLastModified = otherFile.lastModified();
+                return lastModified < otherLastModified ? -1 : (lastModified == otherLastModified ? 0 : 1);
+            }
+        });
+        for (File file : files) {
+            if (size <= MAX_SIZE_BYTES) {
+                break;
+            }
+            // Entries being written by other threads are left to them
+            if (file.equals(keptFile) || file.getName().endsWith(TEMPORARY_FILE_SUFFIX)) {
+                continue;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                size -= length;
+            }
+        }
+    }
+
+    /**
+     * Returns the time until which a response can be used without asking the server, from its
+     * Cache-Control max-age directive. Responses without one are revalidated every time.
+     */
+    static long getFreshUntil(HttpURLConnection connection, long now) {
+        String cacheControl = connection.getHeaderField("Cache-Control");
+        if (cacheControl == null || cacheControl.contains(CACHE_CONTROL_NO_CACHE)) {
+            return 0;
+        }
+
+        for (String directive : cacheControl.split(",")) {
+            directive = directive.trim();
+            if (directive.startsWith(CACHE_CONTROL_MAX_AGE)) {
+                try {
+                    long maxAge = Long.parseLong(directive.substring(CACHE_CONTROL_MAX_AGE.length()));
+                    return now + maxAge * 1000;
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+
+    // The entry file of an URL, named after a hash of the URL without the api key
+    @Nullable
+    private static File getEntryFile(URL url) {
+        File directory = getDirectory();
+        if (directory == null) {
+            return null;
+        }
+        return new File(directory, hash(getKey(url)));
+    }
+
+    // The URL without the api key, so changing the key keeps the cached responses
+    static String getKey(URL url) {
+        StringBuilder key = new StringBuilder()
+                .append(url.getProtocol()).append("://").append(url.getAuthority()).append(url.getPath());
+        String query = url.getQuery();
+        if (query == null) {
+            return key.toString();
+        }
+
+        char separator = '?';
+        for (String parameter : query.split("&")) {
+            String name = parameter.split("=", 2)[0];
+            if (name.isEmpty() || name.equals(TheMovieDatabaseNetworkUtils.API_KEY_PARAM)) {
+                continue;
+            }
+            key.append(separator).append(parameter);
+            separator = '&';
+        }
+        return key.toString();
+    }
+
+    private static String hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(UTF_8));
+            StringBuilder name = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                name.append(Character.forDigit((b >> 4) & 0xf, 16));
+                name.append(Character.forDigit(b & 0xf, 16));
+            }
+            return name.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every platform has SHA-1
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String readOptionalString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeOptionalString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017.  Bruno Retolaza
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kuruchy.android.and_mymovies.utilities;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local tests of the pool of buffers responses are read into.
+ */
+public class ByteArrayPoolTest {
+
+    @Before
+    public void setUp() {
+        ByteArrayPool.clear();
+    }
+
+    @Test
+    public void acquire_roundsUpToPowerOfTwo() {
+        assertEquals(ByteArrayPool.MIN_SIZE, ByteArrayPool.acquire(1).length);
+        assertEquals(ByteArrayPool.MIN_SIZE, ByteArrayPool.acquire(ByteArrayPool.MIN_SIZE).length);
+        assertEquals(2 * ByteArrayPool.MIN_SIZE, ByteArrayPool.acquire(ByteArrayPool.MIN_SIZE + 1).length);
+        assertEquals(16 * 1024, ByteArrayPool.acquire(10000).length);
+    }
+
+    @Test
+    public void acquire_growing_returnsNextSizes() {
+        // Buffers grow by doubling while a body is read, past the sizes that are kept
+        byte[] buffer = ByteArrayPool.acquire(ByteArrayPool.MIN_SIZE);
+        while (buffer.length <= ByteArrayPool.MAX_POOLED_SIZE) {
+            byte[] biggerBuffer = ByteArrayPool.acquire(buffer.length * 2);
+            assertEquals(buffer.length * 2, biggerBuffer.length);
+            ByteArrayPool.release(buffer);
+            buffer = biggerBuffer;
+        }
+        ByteArrayPool.release(buffer);
+
+        assertNotSame(buffer, ByteArrayPool.acquire(buffer.length));
+        assertEquals(ByteArrayPool.MAX_POOLED_SIZE, ByteArrayPool.acquire(ByteArrayPool.MAX_POOLED_SIZE).length);
+    }
+
+    @Test
+    public void releasedBuffer_isReused() {
+        byte[] buffer = ByteArrayPool.acquire(10000);
+        ByteArrayPool.release(buffer);
+
+        assertSame(buffer, ByteArrayPool.acquire(9000));
+        assertNotSame(buffer, ByteArrayPool.acquire(9000));
+    }
+
+    @Test
+    public void releasedBuffer_isOnlyReusedForItsSize() {
+        byte[] buffer = ByteArrayPool.acquire(ByteArrayPool.MIN_SIZE);
+        ByteArrayPool.release(buffer);
+
+        assertNotSame(buffer, ByteArrayPool.acquire(2 * ByteArrayPool.MIN_SIZE));
+        assertSame(buffer, ByteArrayPool.acquire(ByteArrayPool.MIN_SIZE));
+    }
+
+    @Test
+    public void release_keepsAtMostMaxPooledPerSize() {
+        byte[][] buffers = new byte[ByteArrayPool.MAX_POOLED_PER_SIZE + 1][];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = new byte[ByteArrayPool.MIN_SIZE];
+            ByteArrayPool.release(buffers[i]);
+        }
+
+        for (int i = 0; i < ByteArrayPool.MAX_POOLED_PER_SIZE; i++) {
+            byte[] buffer = ByteArrayPool.acquire(ByteArrayPool.MIN_SIZE);
+            boolean released = false;
+            for (int j = 0; j < ByteArrayPool.MAX_POOLED_PER_SIZE; j++) {
+                released |= buffer == buffers[j];
+            }
+            assertTrue(released);
+        }
+        byte[] extra = ByteArrayPool.acquire(ByteArrayPool.MIN_SIZE);
+        for (byte[] buffer : buffers) {
+            assertNotSame(buffer, extra);
+        }
+    }
+
+    @Test
+    public void release_dropsBuffersOfOtherSizes() {
+        byte[] oddBuffer = new byte[ByteArrayPool.MIN_SIZE + 1];
+        byte[] smallBuffer = new byte[ByteArrayPool.MIN_SIZE / 2];
+        byte[] bigBuffer = new byte[ByteArrayPool.MAX_POOLED_SIZE * 2];
+        ByteArrayPool.release(oddBuffer);
+        ByteArrayPool.release(smallBuffer);
+        ByteArrayPool.release(bigBuffer);
+
+        assertNotSame(oddBuffer, ByteArrayPool.acquire(ByteArrayPool.MIN_SIZE + 1));
+        assertNotSame(smallBuffer, ByteArrayPool.acquire(ByteArrayPool.MIN_SIZE / 2));
+        assertNotSame(bigBuffer, ByteArrayPool.acquire(ByteArrayPool.MAX_POOLED_SIZE * 2));
+    }
+}
@@ -0,0 +1,374 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017.  Bruno Retolaza
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kuruchy.android.and_mymovies.utilities;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.GZIPOutputStream;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.SocketPolicy;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local tests of the requests to the movies server.
+ */
+public class TheMovieDatabaseNetworkUtilsTest {
+
+    private static final String PAGE = "{\"page\":1,\"results\":[]}";
+
+    @Rule
+    public final MockWebServer server = new MockWebServer();
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void setUp() throws Exception {
+        ByteArrayPool.clear();
+        TheMovieDatabaseNetworkUtils.setResponseCacheDirectory(folder.newFolder());
+        TheMovieDatabaseRequestScheduler.reset();
+        TheMovieDatabaseCircuitBreaker.reset();
+    }
+
+    private URL getUrl(String path) {
+        return server.url(path).url();
+    }
+
+    private static TheMovieDatabaseNetworkUtils.Response fetch(URL url) throws IOException {
+        return TheMovieDatabaseNetworkUtils.getCachedResponseFromHttpUrl(url,
+                TheMovieDatabaseRequestScheduler.Priority.DETAIL);
+    }
+
+    // A server error asking to be retried at once, so the tests do not wait for the backoff
+    private static MockResponse createServerError() {
+        return new MockResponse().setResponseCode(503).setHeader("Retry-After", "0");
+    }
+
+    // Fails requests until the circuit opens
+    private static void openCircuit() {
+        while (TheMovieDatabaseCircuitBreaker.allowRequest()) {
+            TheMovieDatabaseCircuitBreaker.onFailure();
+        }
+    }
+
+    private static byte[] createBody(int length) {
+        byte[] body = new byte[length];
+        new Random(length).nextBytes(body);
+        return body;
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GZIPOutputStream gzipOut = new GZIPOutputStream(out);
+        gzipOut.write(body);
+        gzipOut.close();
+        return out.toByteArray();
+    }
+
+    @Test
+    public void readBody_withContentLength() throws Exception {
+        byte[] body = createBody(10000);
+
+        assertArrayEquals(body, TheMovieDatabaseNetworkUtils.readBody(
+                new ByteArrayInputStream(body), false, body.length));
+    }
+
+    @Test
+    public void readBody_emptyBody() throws Exception {
+        assertEquals(0, TheMovieDatabaseNetworkUtils.readBody(
+                new ByteArrayInputStream(new byte[0]), false, 0).length);
+    }
+
+    @Test
+    public void readBody_longerThanExpected_growsBuffer() throws Exception {
+        // No Content-Length, the body is read past the default buffer
+        byte[] body = createBody(100 * 1024 + 1);
+
+        assertArrayEquals(body, TheMovieDatabaseNetworkUtils.readBody(new ByteArrayInputStream(body), false, -1));
+    }
+
+    @Test
+    public void readBody_gzipped_isInflated() throws Exception {
+        // Repetitive like JSON, so it inflates past the expected expansion
+        StringBuilder json = new StringBuilder("{\"results\":[");
+        for (int i = 0; i < 2000; i++) {
+            json.append("{\"id\":").append(i).append(",\"title\":\"Movie\"},");
+        }
+        byte[] body = json.append("{}]}").toString().getBytes("UTF-8");
+        byte[] gzippedBody = gzip(body);
+
+        assertArrayEquals(body, TheMovieDatabaseNetworkUtils.readBody(
+                new ByteArrayInputStream(gzippedBody), true, gzippedBody.length));
+    }
+
+    @Test
+    public void readBody_readsIntoPooledBuffer() throws Exception {
+        byte[] pooledBuffer = new byte[ByteArrayPool.MIN_SIZE];
+        ByteArrayPool.release(pooledBuffer);
+        byte[] body = createBody(1000);
+
+        byte[] readBody = TheMovieDatabaseNetworkUtils.readBody(new ByteArrayInputStream(body), false, body.length);
+
+        // Only a copy of the buffer is handed out, the buffer is back in the pool
+        assertNotSame(pooledBuffer, readBody);
+        assertArrayEquals(body, readBody);
+        assertSame(pooledBuffer, ByteArrayPool.acquire(body.length + 1));
+    }
+
+    @Test
+    public void serverError_isRetried() throws Exception {
+        server.enqueue(createServerError());
+        server.enqueue(new MockResponse().setBody(PAGE));
+
+        assertEquals(PAGE, fetch(getUrl("/3/movie/popular?page=1")).getBodyString());
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void serverError_givesUpAfterMaxAttempts() throws Exception {
+        for (int i = 0; i < TheMovieDatabaseNetworkUtils.MAX_ATTEMPTS + 1; i++) {
+            server.enqueue(createServerError());
+        }
+
+        try {
+            fetch(getUrl("/3/movie/popular?page=1"));
+            fail();
+        } catch (IOException expected) {
+        }
+        assertEquals(TheMovieDatabaseNetworkUtils.MAX_ATTEMPTS, server.getRequestCount());
+    }
+
+    @Test
+    public void clientError_isNotRetried() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(401));
+        server.enqueue(new MockResponse().setBody(PAGE));
+
+        try {
+            fetch(getUrl("/3/movie/popular?page=1"));
+            fail();
+        } catch (IOException expected) {
+        }
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void retryAfterTooLong_isNotWaitedFor() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(429).setHeader("Retry-After", "3600"));
+        server.enqueue(new MockResponse().setBody(PAGE));
+
+        try {
+            fetch(getUrl("/3/movie/popular?page=1"));
+            fail();
+        } catch (IOException expected) {
+        }
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void droppedConnection_isRetried() throws Exception {
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START));
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START));
+        server.enqueue(new MockResponse().setBody(PAGE));
+
+        assertEquals(PAGE, fetch(getUrl("/3/movie/popular?page=1")).getBodyString());
+    }
+
+    @Test
+    public void slowResponse_isSharedByConcurrentCallers() throws Exception {
+        server.enqueue(new MockResponse().setBody(PAGE).setBodyDelay(500, TimeUnit.MILLISECONDS));
+        final URL url = getUrl("/3/movie/550");
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<?>[] results = new Future<?>[4];
+            for (int i = 0; i < results.length; i++) {
+                results[i] = executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws IOException {
+                        return fetch(url).getBodyString();
+                    }
+                });
+            }
+            for (Future<?> result : results) {
+                assertEquals(PAGE, result.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void sharedRequest_waitsAtMostUrgentPriority() throws Exception {
+        server.enqueue(new MockResponse().setBody(PAGE));
+        final URL url = getUrl("/3/movie/popular?page=2");
+
+        // Enough tokens for the next pages, not for the background
+        TheMovieDatabaseRequestScheduler.setTokens(1 + TheMovieDatabaseRequestScheduler.Priority.NEXT_PAGE.reservedTokens);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> background = executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws IOException {
+                    return TheMovieDatabaseNetworkUtils.getCachedResponseFromHttpUrl(url,
+                            TheMovieDatabaseRequestScheduler.Priority.BACKGROUND).getBodyString();
+                }
+            });
+            try {
+                background.get(200, TimeUnit.MILLISECONDS);
+                fail();
+            } catch (TimeoutException expected) {
+            }
+
+            // The grid needs the page now, the waiting request goes at its priority
+            Future<String> nextPage = executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws IOException {
+                    return TheMovieDatabaseNetworkUtils.getCachedResponseFromHttpUrl(url,
+                            TheMovieDatabaseRequestScheduler.Priority.NEXT_PAGE).getBodyString();
+                }
+            });
+            assertEquals(PAGE, nextPage.get(10, TimeUnit.SECONDS));
+            assertEquals(PAGE, background.get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void openCircuit_servesCachedResponse() throws Exception {
+        server.enqueue(new MockResponse().setHeader("ETag", "\"v1\"").setBody(PAGE));
+        for (int i = 0; i < 2 * TheMovieDatabaseNetworkUtils.MAX_ATTEMPTS; i++) {
+            server.enqueue(createServerError());
+        }
+        URL url = getUrl("/3/movie/popular?page=1");
+        fetch(url);
+
+        // Fail until the circuit opens, then the stale response is served without asking
+        TheMovieDatabaseNetworkUtils.Response response = null;
+        for (int i = 0; response == null && i < 2; i++) {
+            try {
+                response = fetch(url);
+            } catch (IOException expected) {
+            }
+        }
+        assertNotNull(response);
+        int requestCount = server.getRequestCount();
+
+        assertFalse(response.changed);
+        assertFalse(response.confirmed);
+        assertEquals(PAGE, response.getBodyString());
+        assertEquals(PAGE, fetch(url).getBodyString());
+        assertEquals(requestCount, server.getRequestCount());
+    }
+
+    @Test
+    public void openCircuit_withoutCachedResponse_fails() throws Exception {
+        server.enqueue(new MockResponse().setBody(PAGE));
+        openCircuit();
+
+        try {
+            fetch(getUrl("/3/movie/popular?page=1"));
+            fail();
+        } catch (IOException expected) {
+        }
+        assertEquals(0, server.getRequestCount());
+    }
+
+    @Test
+    public void trialRequest_closesCircuit() throws Exception {
+        server.enqueue(new MockResponse().setBody(PAGE));
+        openCircuit();
+        TheMovieDatabaseCircuitBreaker.expireOpenPeriod();
+
+        assertEquals(PAGE, fetch(getUrl("/3/movie/popular?page=1")).getBodyString());
+        assertTrue(TheMovieDatabaseCircuitBreaker.allowRequest());
+        assertTrue(TheMovieDatabaseCircuitBreaker.allowRequest());
+    }
+
+    @Test
+    public void trialRequest_throwingRuntimeException_releasesTrial() throws Exception {
+        URL url = new URL("http", "localhost", 80, "/3/movie/550", new URLStreamHandler() {
+            @Override
+            protected URLConnection openConnection(URL u) {
+                throw new SecurityException("Permission denied (missing INTERNET permission?)");
+            }
+        });
+        openCircuit();
+        TheMovieDatabaseCircuitBreaker.expireOpenPeriod();
+
+        try {
+            fetch(url);
+            fail();
+        } catch (SecurityException expected) {
+        }
+
+        // The next request checks the server instead of waiting for the failed one forever
+        assertTrue(TheMovieDatabaseCircuitBreaker.allowRequest());
+    }
+
+    @Test
+    public void backdropPreview_isSmallestSize() throws Exception {
+        assertEquals("https://image.tmdb.org/t/p/w300/backdrop.jpg",
+                TheMovieDatabaseNetworkUtils.buildBackdropPreviewUrl("/backdrop.jpg", 1080, false));
+        assertEquals("https://image.tmdb.org/t/p/w1280/backdrop.jpg",
+                TheMovieDatabaseNetworkUtils.buildBackdropUrl("/backdrop.jpg", 1080, false));
+    }
+
+    @Test
+    public void backdropPreview_ofViewLoadedWithSmallestSize_isSkipped() throws Exception {
+        assertNull(TheMovieDatabaseNetworkUtils.buildBackdropPreviewUrl("/backdrop.jpg", 300, false));
+        // Over metered connections a view just above the smallest size is loaded with it
+        assertNull(TheMovieDatabaseNetworkUtils.buildBackdropPreviewUrl("/backdrop.jpg", 400, true));
+        assertNotNull(TheMovieDatabaseNetworkUtils.buildBackdropPreviewUrl("/backdrop.jpg", 400, false));
+    }
+
+    @Test
+    public void backdropPreview_withoutBackdrop_isSkipped() throws Exception {
+        assertNull(TheMovieDatabaseNetworkUtils.buildBackdropPreviewUrl(null, 1080, false));
+        assertNull(TheMovieDatabaseNetworkUtils.buildBackdropPreviewUrl("", 1080, false));
+    }
+}
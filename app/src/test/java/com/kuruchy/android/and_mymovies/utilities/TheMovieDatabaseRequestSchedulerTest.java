@@ -0,0 +1,107 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017.  Bruno Retolaza
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kuruchy.android.and_mymovies.utilities;
+
+import com.kuruchy.android.and_mymovies.utilities.TheMovieDatabaseRequestScheduler.Priority;
+import com.kuruchy.android.and_mymovies.utilities.TheMovieDatabaseRequestScheduler.Ticket;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.InterruptedIOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local tests of the scheduling of the requests to the movies server. The clock does not move in
+ * local tests, so the bucket is only refilled by a reset.
+ */
+public class TheMovieDatabaseRequestSchedulerTest {
+
+    @After
+    public void tearDown() {
+        TheMovieDatabaseRequestScheduler.reset();
+    }
+
+    // Starts a request waiting for its turn
+    private static Thread startRequest(final Ticket ticket) throws InterruptedException {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    TheMovieDatabaseRequestScheduler.acquire(ticket);
+                } catch (InterruptedIOException ignored) {
+                }
+            }
+        });
+        thread.start();
+        thread.join(200);
+        return thread;
+    }
+
+    @Test
+    public void request_leavesReservedTokens() throws Exception {
+        // Enough tokens for the next pages, not for the background
+        TheMovieDatabaseRequestScheduler.setTokens(1 + Priority.NEXT_PAGE.reservedTokens);
+
+        Thread request = startRequest(new Ticket(Priority.BACKGROUND));
+        try {
+            assertTrue(request.isAlive());
+        } finally {
+            request.interrupt();
+        }
+    }
+
+    @Test
+    public void raise_letsWaitingRequestThrough() throws Exception {
+        TheMovieDatabaseRequestScheduler.setTokens(1 + Priority.NEXT_PAGE.reservedTokens);
+        Ticket ticket = new Ticket(Priority.BACKGROUND);
+
+        Thread request = startRequest(ticket);
+        try {
+            assertTrue(request.isAlive());
+
+            ticket.raise(Priority.NEXT_PAGE);
+            request.join(5000);
+            assertFalse(request.isAlive());
+        } finally {
+            request.interrupt();
+        }
+    }
+
+    @Test
+    public void raise_toLowerPriority_isIgnored() throws Exception {
+        TheMovieDatabaseRequestScheduler.setTokens(1 + Priority.NEXT_PAGE.reservedTokens);
+        Ticket ticket = new Ticket(Priority.NEXT_PAGE);
+        ticket.raise(Priority.BACKGROUND);
+
+        Thread request = startRequest(ticket);
+        try {
+            assertFalse(request.isAlive());
+        } finally {
+            request.interrupt();
+        }
+    }
+}
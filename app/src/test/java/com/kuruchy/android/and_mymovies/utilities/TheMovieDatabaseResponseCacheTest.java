@@ -0,0 +1,229 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2017.  Bruno Retolaza
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.kuruchy.android.and_mymovies.utilities;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Arrays;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local tests of the response cache, against a stand-in of the movies server.
+ */
+public class TheMovieDatabaseResponseCacheTest {
+
+    private static final String PAGE = "{\"page\":1,\"results\":[]}";
+    private static final String CHANGED_PAGE = "{\"page\":1,\"results\":[{\"id\":550}]}";
+
+    @Rule
+    public final MockWebServer server = new MockWebServer();
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File mCacheDirectory;
+
+    @Before
+    public void setUp() throws Exception {
+        mCacheDirectory = folder.newFolder();
+        TheMovieDatabaseNetworkUtils.setResponseCacheDirectory(mCacheDirectory);
+        TheMovieDatabaseRequestScheduler.reset();
+        TheMovieDatabaseCircuitBreaker.reset();
+    }
+
+    private URL getUrl(String path) {
+        return server.url(path).url();
+    }
+
+    private TheMovieDatabaseNetworkUtils.Response fetch(URL url) throws IOException {
+        return TheMovieDatabaseNetworkUtils.getCachedResponseFromHttpUrl(url,
+                TheMovieDatabaseRequestScheduler.Priority.DETAIL);
+    }
+
+    @Test
+    public void freshResponse_isServedWithoutRequest() throws Exception {
+        server.enqueue(new MockResponse().setHeader("Cache-Control", "max-age=60").setBody(PAGE));
+        URL url = getUrl("/3/movie/popular?page=1");
+
+        assertTrue(fetch(url).changed);
+        TheMovieDatabaseNetworkUtils.Response response = fetch(url);
+
+        assertFalse(response.changed);
+        assertTrue(response.confirmed);
+        assertEquals(PAGE, response.getBodyString());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void staleResponse_isRevalidatedWithETag() throws Exception {
+        server.enqueue(new MockResponse().setHeader("ETag", "\"v1\"").setBody(PAGE));
+        server.enqueue(new MockResponse().setResponseCode(304).setHeader("ETag", "\"v1\""));
+        URL url = getUrl("/3/movie/popular?page=1");
+
+        fetch(url);
+        TheMovieDatabaseNetworkUtils.Response response = fetch(url);
+
+        server.takeRequest();
+        RecordedRequest revalidation = server.takeRequest();
+        assertEquals("\"v1\"", revalidation.getHeader("If-None-Match"));
+        assertFalse(response.changed);
+        assertTrue(response.confirmed);
+        assertEquals(PAGE, response.getBodyString());
+    }
+
+    @Test
+    public void staleResponse_isRevalidatedWithLastModified() throws Exception {
+        String lastModified = "Wed, 21 Oct 2015 07:28:00 GMT";
+        server.enqueue(new MockResponse().setHeader("Last-Modified", lastModified).setBody(PAGE));
+        server.enqueue(new MockResponse().setResponseCode(304));
+        URL url = getUrl("/3/movie/550?append_to_response=videos,reviews");
+
+        fetch(url);
+        TheMovieDatabaseNetworkUtils.Response response = fetch(url);
+
+        server.takeRequest();
+        RecordedRequest revalidation = server.takeRequest();
+        assertEquals(lastModified, revalidation.getHeader("If-Modified-Since"));
+        assertFalse(response.changed);
+        assertEquals(PAGE, response.getBodyString());
+    }
+
+    @Test
+    public void notModifiedResponse_renewsFreshness() throws Exception {
+        server.enqueue(new MockResponse().setHeader("ETag", "\"v1\"").setBody(PAGE));
+        server.enqueue(new MockResponse().setResponseCode(304).setHeader("Cache-Control", "max-age=60"));
+        URL url = getUrl("/3/movie/popular?page=1");
+
+        fetch(url);
+        fetch(url);
+        TheMovieDatabaseNetworkUtils.Response response = fetch(url);
+
+        assertFalse(response.changed);
+        assertEquals(PAGE, response.getBodyString());
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void expiredResponse_isRevalidated() throws Exception {
+        server.enqueue(new MockResponse()
+                .setHeader("Cache-Control", "max-age=0")
+                .setHeader("ETag", "\"v1\"")
+                .setBody(PAGE));
+        server.enqueue(new MockResponse().setResponseCode(304));
+        URL url = getUrl("/3/movie/popular?page=1");
+
+        fetch(url);
+        fetch(url);
+
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void changedResponse_replacesCachedOne() throws Exception {
+        server.enqueue(new MockResponse().setHeader("ETag", "\"v1\"").setBody(PAGE));
+        server.enqueue(new MockResponse().setHeader("ETag", "\"v2\"").setBody(CHANGED_PAGE));
+        server.enqueue(new MockResponse().setResponseCode(304));
+        URL url = getUrl("/3/movie/popular?page=1");
+
+        fetch(url);
+        TheMovieDatabaseNetworkUtils.Response changed = fetch(url);
+        TheMovieDatabaseNetworkUtils.Response revalidated = fetch(url);
+
+        assertTrue(changed.changed);
+        assertEquals(CHANGED_PAGE, changed.getBodyString());
+        assertEquals(CHANGED_PAGE, revalidated.getBodyString());
+        server.takeRequest();
+        server.takeRequest();
+        assertEquals("\"v2\"", server.takeRequest().getHeader("If-None-Match"));
+    }
+
+    @Test
+    public void noStoreResponse_isNotCached() throws Exception {
+        server.enqueue(new MockResponse()
+                .setHeader("Cache-Control", "no-store")
+                .setHeader("ETag", "\"v1\"")
+                .setBody(PAGE));
+        server.enqueue(new MockResponse().setBody(PAGE));
+        URL url = getUrl("/3/movie/popular?page=1");
+
+        fetch(url);
+        TheMovieDatabaseNetworkUtils.Response response = fetch(url);
+
+        server.takeRequest();
+        assertNull(server.takeRequest().getHeader("If-None-Match"));
+        assertTrue(response.changed);
+    }
+
+    @Test
+    public void key_leavesOutApiKey() throws Exception {
+        assertEquals("http://api.themoviedb.org/3/movie/popular?page=2",
+                TheMovieDatabaseResponseCache.getKey(
+                        new URL("http://api.themoviedb.org/3/movie/popular?api_key=secret&page=2")));
+        assertEquals("http://api.themoviedb.org/3/movie/550",
+                TheMovieDatabaseResponseCache.getKey(new URL("http://api.themoviedb.org/3/movie/550?api_key=secret")));
+    }
+
+    @Test
+    public void put_evictsLeastRecentlyUsedEntries() throws Exception {
+        // Three entries, two of them fit
+        char[] body = new char[(int) (TheMovieDatabaseResponseCache.MAX_SIZE_BYTES * 3 / 8)];
+        Arrays.fill(body, 'a');
+        for (int i = 0; i < 3; i++) {
+            server.enqueue(new MockResponse().setHeader("ETag", "\"v1\"").setBody(new String(body)));
+        }
+        server.enqueue(new MockResponse().setBody(PAGE));
+        URL oldest = getUrl("/3/movie/1");
+
+        fetch(oldest);
+        // Modification times are too coarse to order entries written in a row
+        for (File file : mCacheDirectory.listFiles()) {
+            assertTrue(file.setLastModified(System.currentTimeMillis() - 60 * 1000));
+        }
+        fetch(getUrl("/3/movie/2"));
+        fetch(getUrl("/3/movie/3"));
+        fetch(oldest);
+
+        long size = 0;
+        for (File file : mCacheDirectory.listFiles()) {
+            size += file.length();
+        }
+        assertTrue(size <= TheMovieDatabaseResponseCache.MAX_SIZE_BYTES);
+        for (int i = 0; i < 3; i++) {
+            server.takeRequest();
+        }
+        assertNull(server.takeRequest().getHeader("If-None-Match"));
+    }
+}